@@ -0,0 +1,130 @@
+package benchmarks;
+
+import concurrentcube.AxisScheduler;
+import concurrentcube.Cube;
+import concurrentcube.Side;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CubeBenchmark {
+
+    public enum AxisMix {
+        SAME_AXIS,
+        MIXED_AXES
+    }
+
+    public enum Scheduler {
+        PHASE_BARRIER,
+        EARLY_EXIT,
+        COHORTS_16
+    }
+
+    private static final int SHOW = -1;
+    private static final int OPERATIONS = 4096;
+
+    @Param({"3", "10", "100"})
+    public int size;
+
+    @Param({"SAME_AXIS", "MIXED_AXES"})
+    public AxisMix axisMix;
+
+    @Param({"0.0", "0.5", "1.0"})
+    public double collisionRatio;
+
+    @Param({"0.0", "0.01", "0.1"})
+    public double showRatio;
+
+    @Param({"PHASE_BARRIER", "EARLY_EXIT", "COHORTS_16"})
+    public Scheduler scheduler;
+
+    private Cube cube;
+
+    @Setup
+    public void setUp() {
+        cube = Cube.builder(size)
+                .scheduler(createScheduler())
+                .build();
+    }
+
+    private AxisScheduler createScheduler() {
+        switch (scheduler) {
+            case EARLY_EXIT:
+                return AxisScheduler.earlyExit();
+            case COHORTS_16:
+                return AxisScheduler.cohorts(16, Duration.ofMillis(1));
+            default:
+                return AxisScheduler.phaseBarrier();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Operations {
+        private final int[] sides = new int[OPERATIONS];
+        private final int[] layers = new int[OPERATIONS];
+        private int next = 0;
+
+        @Setup
+        public void setUp(CubeBenchmark benchmark, ThreadParams threadParams) {
+            int threadIndex = threadParams.getThreadIndex();
+            int size = benchmark.size;
+            Random random = new Random(threadIndex);
+
+            for (int i = 0; i < OPERATIONS; i++) {
+                if (random.nextDouble() < benchmark.showRatio) {
+                    sides[i] = SHOW;
+                    continue;
+                }
+
+                if (benchmark.axisMix == AxisMix.SAME_AXIS) {
+                    sides[i] = random.nextBoolean() ? Side.FRONT.getId() : Side.BACK.getId();
+                }
+                else {
+                    sides[i] = random.nextInt(6);
+                }
+
+                int realLayer;
+                if (size == 1 || random.nextDouble() < benchmark.collisionRatio) {
+                    realLayer = 0;
+                }
+                else {
+                    realLayer = 1 + threadIndex % (size - 1);
+                }
+                layers[i] = Side.getSideOfId(sides[i]).isDefault() ? realLayer : size - 1 - realLayer;
+            }
+        }
+    }
+
+    @Benchmark
+    public void operation(Operations operations, Blackhole blackhole) throws InterruptedException {
+        int i = operations.next;
+        operations.next = (i + 1) & (OPERATIONS - 1);
+
+        if (operations.sides[i] == SHOW) {
+            blackhole.consume(cube.show());
+        }
+        else {
+            cube.rotate(operations.sides[i], operations.layers[i]);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class CubeBenchmarkRunner {
+
+    private static final String THREADS_PROPERTY = "cube.threads";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        String threadCounts = System.getProperty(THREADS_PROPERTY, "1,2,4,8");
+
+        for (String threadCount : threadCounts.split(",")) {
+            OptionsBuilder options = new OptionsBuilder();
+            options.parent(commandLineOptions);
+            if (commandLineOptions.getIncludes().isEmpty()) {
+                options.include(CubeBenchmark.class.getSimpleName());
+            }
+            options.threads(Integer.parseInt(threadCount.trim()));
+
+            new Runner(options.build()).run();
+        }
+    }
+}
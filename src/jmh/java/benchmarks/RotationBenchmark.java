@@ -0,0 +1,62 @@
+package benchmarks;
+
+import concurrentcube.Cube;
+import concurrentcube.StateModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RotationBenchmark {
+
+    private static final int OPERATIONS = 4096;
+
+    @Param({"2", "3", "4", "5"})
+    public int size;
+
+    @Param({"STICKERS", "PERMUTATION_TABLES"})
+    public StateModel stateModel;
+
+    private final int[] sides = new int[OPERATIONS];
+    private final int[] layers = new int[OPERATIONS];
+    private int next = 0;
+
+    private Cube cube;
+
+    @Setup
+    public void setUp() {
+        cube = Cube.builder(size)
+                .stateModel(stateModel)
+                .build();
+
+        Random random = new Random(size);
+        for (int i = 0; i < OPERATIONS; i++) {
+            sides[i] = random.nextInt(6);
+            layers[i] = random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    public void rotate() throws InterruptedException {
+        int i = next;
+        next = (i + 1) & (OPERATIONS - 1);
+
+        cube.rotate(sides[i], layers[i]);
+    }
+}
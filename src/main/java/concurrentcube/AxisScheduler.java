@@ -0,0 +1,110 @@
+package concurrentcube;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public abstract class AxisScheduler {
+    private final ArrayList<Runnable> admittedCallbacks = new ArrayList<>();
+    private final AtomicBoolean attached = new AtomicBoolean();
+    MetricsRecorder metrics;
+    private PhaseListener[] phaseListeners = new PhaseListener[0];
+
+    AxisScheduler() {
+    }
+
+    public static AxisScheduler phaseBarrier() {
+        return new PhaseBarrierScheduler();
+    }
+
+    public static AxisScheduler earlyExit() {
+        return cohorts(1, null);
+    }
+
+    public static AxisScheduler cohorts(int maxCohortSize, Duration maxPhaseDuration) {
+        if (maxCohortSize < 1) {
+            throw new IllegalArgumentException("maxCohortSize must be positive");
+        }
+        if (maxPhaseDuration != null && (maxPhaseDuration.isNegative() || maxPhaseDuration.isZero())) {
+            throw new IllegalArgumentException("maxPhaseDuration must be positive");
+        }
+        return new CohortScheduler(maxCohortSize,
+                maxPhaseDuration == null ? Long.MAX_VALUE : maxPhaseDuration.toNanos());
+    }
+
+    abstract void beginningProtocol(int threadTypeId) throws InterruptedException;
+
+    abstract void endingProtocol();
+
+    abstract void abortingProtocol();
+
+    abstract void beginningProtocolAsync(int threadTypeId, Runnable onAdmitted);
+
+    abstract void endingProtocolAsync();
+
+    void attach() {
+        if (!attached.compareAndSet(false, true)) {
+            throw new IllegalArgumentException("scheduler is already used by another cube");
+        }
+    }
+
+    void setMetrics(MetricsRecorder metrics) {
+        this.metrics = metrics;
+    }
+
+    Runnable recordingAxisWait(int threadTypeId, int blockingThreadType, long start, Runnable onAdmitted) {
+        if (metrics == null) {
+            return onAdmitted;
+        }
+        return () -> {
+            metrics.axisWait(threadTypeId, blockingThreadType, System.nanoTime() - start);
+            onAdmitted.run();
+        };
+    }
+
+    void addPhaseListener(PhaseListener phaseListener) {
+        PhaseListener[] listeners = Arrays.copyOf(phaseListeners, phaseListeners.length + 1);
+        listeners[phaseListeners.length] = phaseListener;
+        phaseListeners = listeners;
+    }
+
+    void phaseStarted(int threadTypeId) {
+        if (metrics != null) {
+            metrics.phaseStarted();
+        }
+        for (PhaseListener phaseListener : phaseListeners) {
+            phaseListener.phaseStarted(threadTypeId);
+        }
+    }
+
+    void phaseEnded(int threadTypeId, int cohortSize) {
+        if (metrics != null) {
+            metrics.phaseEnded(cohortSize);
+        }
+        for (PhaseListener phaseListener : phaseListeners) {
+            phaseListener.phaseEnded(threadTypeId);
+        }
+    }
+
+    void addAdmittedCallback(Runnable onAdmitted) {
+        admittedCallbacks.add(onAdmitted);
+    }
+
+    Runnable[] takeAdmittedCallbacks() {
+        if (admittedCallbacks.isEmpty()) {
+            return null;
+        }
+        Runnable[] callbacks = admittedCallbacks.toArray(new Runnable[0]);
+        admittedCallbacks.clear();
+        return callbacks;
+    }
+
+    static void runAdmittedCallbacks(Runnable[] callbacks) {
+        if (callbacks != null) {
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
+}
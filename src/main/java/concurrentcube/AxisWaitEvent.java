@@ -0,0 +1,11 @@
+package concurrentcube;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("concurrentcube.AxisWait")
+@Label("Axis Wait")
+@Description("Time spent waiting in the axis scheduler for a phase of the thread type")
+class AxisWaitEvent extends CubeEvent {
+}
@@ -0,0 +1,7 @@
+package concurrentcube;
+
+public enum BackpressurePolicy {
+    DROP,
+    COALESCE,
+    BLOCK
+}
@@ -0,0 +1,6 @@
+package concurrentcube;
+
+public enum CallbackMode {
+    PER_MOVE,
+    PER_SEQUENCE
+}
@@ -0,0 +1,96 @@
+package concurrentcube;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class ChangeLog {
+    private static final int LAYER_BITS = 26;
+    private static final int MOVE_BITS = LAYER_BITS + 3;
+
+    private final int size;
+    private final int capacity;
+    private final AtomicLong version;
+    private final AtomicLongArray entries;
+
+    ChangeLog(int size, int capacity, long version) {
+        this.size = size;
+        this.capacity = capacity;
+        this.version = new AtomicLong(version);
+        this.entries = new AtomicLongArray(capacity);
+    }
+
+    long version() {
+        return version.get();
+    }
+
+    void record(int side, int layer, long next) {
+        long entry = (next / capacity) << MOVE_BITS | (long) side << LAYER_BITS | layer;
+        entries.accumulateAndGet((int) (next % capacity), entry, Math::max);
+        version.accumulateAndGet(next, Math::max);
+    }
+
+    CubeDelta since(CubeState state, long fromVersion) {
+        long current = version.get();
+        if (fromVersion < 0 || fromVersion > current) {
+            throw new IllegalArgumentException("version must be between 0 and " + current);
+        }
+        if (current - fromVersion > capacity) {
+            return full(state, fromVersion, current);
+        }
+
+        int stickers = 6 * size * size;
+        int count = 0;
+        for (long next = fromVersion + 1; next <= current; next++) {
+            long entry = entries.get((int) (next % capacity));
+            if (entry >>> MOVE_BITS != next / capacity) {
+                return full(state, fromVersion, current);
+            }
+            int layer = (int) (entry & ((1 << LAYER_BITS) - 1));
+            count += MoveGeometry.touched(size, layer);
+            if (count >= stickers) {
+                return full(state, fromVersion, current);
+            }
+        }
+
+        int[] positions = new int[count];
+        int filled = 0;
+        for (long next = fromVersion + 1; next <= current; next++) {
+            long entry = entries.get((int) (next % capacity));
+            int side = (int) (entry >>> LAYER_BITS) & 7;
+            int layer = (int) (entry & ((1 << LAYER_BITS) - 1));
+            filled = MoveGeometry.positions(size, side, layer, positions, filled);
+        }
+
+        Arrays.sort(positions);
+        int unique = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (i == 0 || positions[i] != positions[i - 1]) {
+                positions[unique++] = positions[i];
+            }
+        }
+        return delta(state, fromVersion, current, Arrays.copyOf(positions, unique));
+    }
+
+    static CubeDelta ofMove(CubeState state, int side, int layer, long version) {
+        int size = state.getSize();
+        int[] positions = new int[MoveGeometry.touched(size, layer)];
+        MoveGeometry.positions(size, side, layer, positions, 0);
+        return delta(state, version - 1, version, positions);
+    }
+
+    private static CubeDelta delta(CubeState state, long fromVersion, long version, int[] positions) {
+        int size = state.getSize();
+        int faceSize = size * size;
+        byte[] colors = new byte[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            int index = positions[i] % faceSize;
+            colors[i] = state.get(positions[i] / faceSize, index / size, index % size);
+        }
+        return new CubeDelta(fromVersion, version, positions, colors);
+    }
+
+    static CubeDelta full(CubeState state, long fromVersion, long current) {
+        return new CubeDelta(fromVersion, current, null, state.colors());
+    }
+}
@@ -0,0 +1,125 @@
+package concurrentcube;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+final class Checkpoints {
+    private static final int MAGIC = 0x43554243;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+
+    static final class Checkpoint {
+        final long sequence;
+        final byte[] colors;
+
+        private Checkpoint(long sequence, byte[] colors) {
+            this.sequence = sequence;
+            this.colors = colors;
+        }
+    }
+
+    private Checkpoints() {
+    }
+
+    static void write(Path directory, int size, long sequence, byte[] colors) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (colors.length + 1) / 2 + 4);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT);
+        buffer.putInt(size);
+        buffer.putLong(sequence);
+        for (int i = 0; i < colors.length; i += 2) {
+            int high = i + 1 < colors.length ? colors[i + 1] : 0;
+            buffer.put((byte) (colors[i] | high << 4));
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) checksum.getValue());
+        buffer.flip();
+
+        Path temporary = directory.resolve(PREFIX + "tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Path file = directory.resolve(String.format("%s%019d%s", PREFIX, sequence, SUFFIX));
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    static void deleteBefore(Path directory, long sequence) throws IOException {
+        for (Path older : checkpoints(directory)) {
+            String name = older.getFileName().toString();
+            if (Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) < sequence) {
+                Files.delete(older);
+            }
+        }
+    }
+
+    static Checkpoint load(Path directory, int size) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        ArrayList<Path> checkpoints = checkpoints(directory);
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Checkpoint checkpoint = read(checkpoints.get(i), size);
+            if (checkpoint != null) {
+                return checkpoint;
+            }
+        }
+        return null;
+    }
+
+    private static Checkpoint read(Path file, int size) throws IOException {
+        int stickers = 6 * size * size;
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length != HEADER_SIZE + (stickers + 1) / 2 + 4) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length - 4);
+        if (buffer.getInt(bytes.length - 4) != (int) checksum.getValue()
+                || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT || buffer.getInt() != size) {
+            return null;
+        }
+
+        long sequence = buffer.getLong();
+        byte[] colors = new byte[stickers];
+        for (int i = 0; i < stickers; i += 2) {
+            byte packed = buffer.get();
+            colors[i] = (byte) (packed & 0x0F);
+            if (i + 1 < stickers) {
+                colors[i + 1] = (byte) ((packed >>> 4) & 0x0F);
+            }
+        }
+        return new Checkpoint(sequence, colors);
+    }
+
+    private static ArrayList<Path> checkpoints(Path directory) throws IOException {
+        ArrayList<Path> checkpoints = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                checkpoints.add(file);
+            }
+        }
+        Collections.sort(checkpoints);
+        return checkpoints;
+    }
+}
@@ -0,0 +1,207 @@
+package concurrentcube;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+class CohortScheduler extends AxisScheduler {
+    private static final int THREAD_TYPES = 4;
+
+    private final int maxCohortSize;
+    private final long maxPhaseNanos;
+
+    private int currentThreadType = -1;
+    private int howManyThreadsActive = 0;
+    private int howManyWaiting = 0;
+    private int cohortSize = 0;
+    private long phaseStart;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition[] admission = new Condition[THREAD_TYPES];
+    private final List<ArrayDeque<Waiter>> queues;
+
+    private static final class Waiter {
+        private final Runnable onAdmitted;
+        private boolean admitted = false;
+
+        private Waiter(Runnable onAdmitted) {
+            this.onAdmitted = onAdmitted;
+        }
+    }
+
+    CohortScheduler(int maxCohortSize, long maxPhaseNanos) {
+        this.maxCohortSize = maxCohortSize;
+        this.maxPhaseNanos = maxPhaseNanos;
+
+        queues = new ArrayList<>(THREAD_TYPES);
+        for (int i = 0; i < THREAD_TYPES; i++) {
+            queues.add(new ArrayDeque<>());
+            admission[i] = lock.newCondition();
+        }
+    }
+
+    @Override
+    void beginningProtocol(int threadTypeId) throws InterruptedException {
+        long start = metrics != null ? System.nanoTime() : 0;
+        Runnable[] callbacks = null;
+        lock.lock();
+        try {
+            int blockingThreadType = currentThreadType;
+            if (canJoin(threadTypeId)) {
+                join(threadTypeId);
+                if (metrics != null) {
+                    metrics.axisWait(threadTypeId, blockingThreadType, System.nanoTime() - start);
+                }
+                return;
+            }
+
+            Waiter waiter = new Waiter(null);
+            queues.get(threadTypeId).addLast(waiter);
+            howManyWaiting++;
+            while (!waiter.admitted) {
+                try {
+                    admission[threadTypeId].await();
+                } catch (InterruptedException e) {
+                    if (waiter.admitted) {
+                        leave();
+                    }
+                    else {
+                        queues.get(threadTypeId).remove(waiter);
+                        howManyWaiting--;
+                        admitCurrentTypeIfAlone();
+                    }
+                    callbacks = takeAdmittedCallbacks();
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+
+            if (metrics != null) {
+                metrics.axisWait(threadTypeId, blockingThreadType, System.nanoTime() - start);
+            }
+        }
+        finally {
+            lock.unlock();
+            runAdmittedCallbacks(callbacks);
+        }
+    }
+
+    @Override
+    void endingProtocol() {
+        Runnable[] callbacks;
+        lock.lock();
+        try {
+            leave();
+            callbacks = takeAdmittedCallbacks();
+        }
+        finally {
+            lock.unlock();
+        }
+        runAdmittedCallbacks(callbacks);
+    }
+
+    @Override
+    void beginningProtocolAsync(int threadTypeId, Runnable onAdmitted) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        Runnable admitted;
+        lock.lock();
+        try {
+            admitted = recordingAxisWait(threadTypeId, currentThreadType, start, onAdmitted);
+            if (!canJoin(threadTypeId)) {
+                queues.get(threadTypeId).addLast(new Waiter(admitted));
+                howManyWaiting++;
+                return;
+            }
+            join(threadTypeId);
+        }
+        finally {
+            lock.unlock();
+        }
+        admitted.run();
+    }
+
+    @Override
+    void endingProtocolAsync() {
+        endingProtocol();
+    }
+
+    @Override
+    void abortingProtocol() {
+        endingProtocol();
+    }
+
+    private boolean canJoin(int threadTypeId) {
+        if (currentThreadType == -1) {
+            return howManyWaiting == 0;
+        }
+        if (currentThreadType != threadTypeId) {
+            return false;
+        }
+        return howManyWaiting == 0 || isPhaseOpen();
+    }
+
+    private void join(int threadTypeId) {
+        if (currentThreadType == -1) {
+            startPhase(threadTypeId);
+        }
+        howManyThreadsActive++;
+        cohortSize++;
+    }
+
+    private boolean isPhaseOpen() {
+        if (cohortSize >= maxCohortSize) {
+            return false;
+        }
+        return maxPhaseNanos == Long.MAX_VALUE || System.nanoTime() - phaseStart < maxPhaseNanos;
+    }
+
+    private void startPhase(int threadTypeId) {
+        currentThreadType = threadTypeId;
+        cohortSize = 0;
+        phaseStart = System.nanoTime();
+        phaseStarted(threadTypeId);
+    }
+
+    private void leave() {
+        howManyThreadsActive--;
+        if (howManyThreadsActive > 0) {
+            return;
+        }
+        phaseEnded(currentThreadType, cohortSize);
+
+        for (int i = 1; i <= THREAD_TYPES; i++) {
+            int threadTypeId = (currentThreadType + i) % THREAD_TYPES;
+            if (!queues.get(threadTypeId).isEmpty()) {
+                startPhase(threadTypeId);
+                admitWaiting(threadTypeId);
+                return;
+            }
+        }
+        currentThreadType = -1;
+    }
+
+    private void admitCurrentTypeIfAlone() {
+        if (currentThreadType != -1 && howManyWaiting > 0
+                && howManyWaiting == queues.get(currentThreadType).size()) {
+            admitWaiting(currentThreadType);
+        }
+    }
+
+    private void admitWaiting(int threadTypeId) {
+        ArrayDeque<Waiter> queue = queues.get(threadTypeId);
+        while (!queue.isEmpty()) {
+            Waiter waiter = queue.pollFirst();
+            waiter.admitted = true;
+            if (waiter.onAdmitted != null) {
+                addAdmittedCallback(waiter.onAdmitted);
+            }
+            howManyWaiting--;
+            howManyThreadsActive++;
+            cohortSize++;
+        }
+        admission[threadTypeId].signalAll();
+    }
+}
@@ -1,349 +1,828 @@
 package concurrentcube;
 
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
-public class Cube {
-    private final int[][][] blocks;
+public class Cube implements Closeable {
+    private static final int SHOW_BUFFER_SIZE = 8192;
+    private static final long MAX_SHOWN_STICKERS = Integer.MAX_VALUE - 8;
+
+    private final CubeState stickers;
+    private final MappedStickers mappedStickers;
     private final int size;
-    private final BiConsumer<Integer, Integer> beforeRotation;
-    private final BiConsumer<Integer, Integer> afterRotation;
+    private final IntIntConsumer beforeRotation;
+    private final IntIntConsumer afterRotation;
     private final Runnable beforeShowing;
     private final Runnable afterShowing;
 
-    private int currentThreadType = -1;
-    private int howManyThreadsActive = 0;
-    private int howManyToExit = 0;
-    private int howManyWaiting = 0;
-
-    private final Lock lock = new ReentrantLock();
-    private final Condition waiting = lock.newCondition();
-    private final Condition entrance = lock.newCondition();
-    private final Condition exit = lock.newCondition();
-
-    private final Semaphore[] useLayer;
+    private final ShowMode showMode;
+    private final AxisScheduler scheduler;
+    private final Executor asyncExecutor;
+
+    private final LayerReservations useLayer;
+
+    private final MetricsRecorder metrics;
+    private final CopyOnWriteArrayList<ObjectName> metricsNames = new CopyOnWriteArrayList<>();
+    private final RotationJournal journal;
+    private final Path journalDirectory;
+    private final boolean stateHash;
+    private final FaceCounters faceCounters;
+    private final ChangeLog changeLog;
+    private final AtomicLong rotationSequence;
+    private final CubePublisher publisher;
+    private final ScheduledExecutorService checkpointer;
+    private final Object checkpointLock = new Object();
+    private long lastCheckpoint;
+    private final AtomicReference<Exception> checkpointFailure = new AtomicReference<>();
 
     public Cube(int size, BiConsumer<Integer, Integer> beforeRotation, BiConsumer<Integer, Integer> afterRotation,
                 Runnable beforeShowing, Runnable afterShowing) {
-        this.size = size;
-        this.beforeRotation = beforeRotation;
-        this.afterRotation = afterRotation;
-        this.beforeShowing = beforeShowing;
-        this.afterShowing = afterShowing;
-
-        blocks = new int[6][size][size];
-        setDefaultColors();
+        this(builder(size)
+                .beforeRotation(beforeRotation::accept)
+                .afterRotation(afterRotation::accept)
+                .beforeShowing(beforeShowing)
+                .afterShowing(afterShowing));
+    }
 
-        useLayer = new Semaphore[size];
-        for (int i = 0; i < size; i++) {
-            useLayer[i] = new Semaphore(1);
+    private Cube(Builder builder) {
+        this.size = builder.size;
+        this.beforeRotation = builder.beforeRotation;
+        this.afterRotation = builder.afterRotation;
+        this.beforeShowing = builder.beforeShowing;
+        this.afterShowing = builder.afterShowing;
+        this.showMode = builder.showMode;
+        if (builder.scheduler != null) {
+            this.scheduler = builder.scheduler;
+        }
+        else {
+            this.scheduler = builder.schedulerMode == SchedulerMode.EARLY_EXIT
+                    ? AxisScheduler.earlyExit() : AxisScheduler.phaseBarrier();
+        }
+        scheduler.attach();
+        this.asyncExecutor = builder.asyncExecutor;
+
+        if (builder.mappedFile != null) {
+            try {
+                mappedStickers = MappedStickers.open(builder.mappedFile, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            scheduler.addPhaseListener(mappedStickers);
+            stickers = mappedStickers;
+        }
+        else {
+            mappedStickers = null;
+            stickers = createState(builder.stateModel, size);
         }
-    }
 
-    private void setDefaultColors() {
-        for (Side side : Side.values()) {
-            for (int row = 0; row < size; row++) {
-                for (int column = 0; column < size; column++) {
-                    blocks[side.getId()][row][column] = side.getId();
+        journalDirectory = builder.journal;
+        if (journalDirectory != null) {
+            try {
+                Checkpoints.Checkpoint checkpoint = Checkpoints.load(journalDirectory, size);
+                if (checkpoint != null) {
+                    stickers.load(checkpoint.colors);
+                    lastCheckpoint = checkpoint.sequence;
                 }
+                journal = RotationJournal.open(journalDirectory, builder.journalSegmentSize, asyncExecutor,
+                        stickers, lastCheckpoint);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+            scheduler.addPhaseListener(journal);
+        }
+        else {
+            journal = null;
+        }
+
+        stateHash = builder.stateHash;
+        if (stateHash) {
+            stickers.trackHash();
+        }
+        faceCounters = builder.solvedTracking ? new FaceCounters(stickers) : null;
+        long firstSequence = journal != null ? journal.lastSequence() : 0;
+        rotationSequence = new AtomicLong(firstSequence);
+        changeLog = builder.changeLogCapacity > 0
+                ? new ChangeLog(size, builder.changeLogCapacity, firstSequence) : null;
+        publisher = builder.updateBufferSize > 0
+                ? new CubePublisher(builder.updateBufferSize, builder.backpressurePolicy, builder.updateDeltas,
+                        firstSequence,
+                        builder.updateExecutor != null ? builder.updateExecutor : CubePublisher.dispatcher(),
+                        this::snapshotUpdate)
+                : null;
+
+        metrics = builder.metrics ? new MetricsRecorder(size) : null;
+        if (metrics != null) {
+            scheduler.setMetrics(metrics);
         }
+
+        useLayer = new LayerReservations(size, metrics);
+
+        if (builder.checkpointInterval != null) {
+            checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cube-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = builder.checkpointInterval.toNanos();
+            checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, interval, interval, TimeUnit.NANOSECONDS);
+        }
+        else {
+            checkpointer = null;
+        }
+    }
+
+    private static CubeState createState(StateModel stateModel, int size) {
+        switch (stateModel) {
+            case PERMUTATION_TABLES:
+                return new PermutationStickers(size);
+            case CUBIES:
+                return new CubieState(size);
+            default:
+                return new Stickers(size);
+        }
+    }
+
+    public static Builder builder(int size) {
+        return new Builder(size);
     }
 
     public int getSize() {
         return size;
     }
 
-    private void rotateSideArrayClockwise(int sideId) {
-        for (int i = 0; i < size - 1; i++){
-            for (int j = i; j < size - 1 - i; j++) {
-                int temp = blocks[sideId][i][j];
-                blocks[sideId][i][j] = blocks[sideId][size - 1 - j][i];
-                blocks[sideId][size - 1 - j][i] = blocks[sideId][size - 1 - i][size - 1 - j];
-                blocks[sideId][size - 1 - i][size - 1 - j] = blocks[sideId][j][size - 1 - i];
-                blocks[sideId][j][size - 1 - i] = temp;
-            }
+    public CubeMetrics metrics() {
+        if (metrics == null) {
+            throw new IllegalStateException("metrics are disabled");
         }
+        return metrics.snapshot();
     }
 
-    private void rotateSideArrayCounterClockwise(int sideId) {
-        for (int i = 0; i < size - 1; i++){
-            for (int j = i; j < size - 1 - i; j++) {
-                int temp = blocks[sideId][j][size - 1 - i];
-                blocks[sideId][j][size - 1 - i] = blocks[sideId][size - 1 - i][size - 1 - j];
-                blocks[sideId][size - 1 - i][size - 1 - j] = blocks[sideId][size - 1 - j][i];
-                blocks[sideId][size - 1 - j][i] = blocks[sideId][i][j];
-                blocks[sideId][i][j] = temp;
-            }
+    public ObjectName registerMetrics(String name) throws JMException {
+        if (metrics == null) {
+            throw new IllegalStateException("metrics are disabled");
         }
+        ObjectName objectName = new ObjectName("concurrentcube", "name", name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new CubeMetricsBean(metrics), objectName);
+        metricsNames.add(objectName);
+        return objectName;
     }
 
-    private int[] getColumnOfArray(int sideId, int column) {
-        int[] array = new int[size];
+    public void rotate(int side, int layer) throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        int threadTypeId = Side.getThreadTypeId(side);
+        CubeEvent axisWait = CubeEvents.recording()
+                ? CubeEvents.begin(new AxisWaitEvent(), threadTypeId, side, layer) : null;
+        scheduler.beginningProtocol(threadTypeId);
+        CubeEvents.commit(axisWait);
+
+        long sequence = rotateInPhase(side, layer);
 
-        for (int row = 0; row < size; row++) {
-            array[row] = blocks[sideId][row][column];
+        scheduler.endingProtocol();
+
+        if (journal != null) {
+            journal.awaitDurable(sequence);
         }
+    }
 
-        return array;
+    public void rotateAll(int[] sides, int[] layers) throws InterruptedException {
+        if (sides.length != layers.length) {
+            throw new IllegalArgumentException("sides and layers must have the same length");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+
+        long sequence = 0;
+        int from = 0;
+        while (from < sides.length) {
+            int threadTypeId = Side.getThreadTypeId(sides[from]);
+            int to = from + 1;
+            while (to < sides.length && Side.getThreadTypeId(sides[to]) == threadTypeId) {
+                to++;
+            }
+
+            CubeEvent axisWait = CubeEvents.recording()
+                    ? CubeEvents.begin(new AxisWaitEvent(), threadTypeId, sides[from], layers[from]) : null;
+            scheduler.beginningProtocol(threadTypeId);
+            CubeEvents.commit(axisWait);
+            for (int i = from; i < to; i++) {
+                sequence = rotateInPhase(sides[i], layers[i]);
+            }
+            scheduler.endingProtocol();
+
+            from = to;
+        }
+
+        if (journal != null) {
+            journal.awaitDurable(sequence);
+        }
     }
 
-    private int[] getRowOfArray(int sideId, int row) {
-        return blocks[sideId][row];
+    private void checkJournal() {
+        if (journal != null) {
+            try {
+                journal.checkFailure();
+            } catch (UncheckedIOException e) {
+                scheduler.abortingProtocol();
+                throw e;
+            }
+        }
     }
 
-    private void setColumnOfArray(int sideId, int column, int[] array) {
-        for (int row = 0; row < size; row++) {
-            blocks[sideId][row][column] = array[row];
+    private long rotateInPhase(int side, int layer) throws InterruptedException {
+        checkJournal();
+        int realLayer = Side.getSideOfId(side).isDefault() ? layer : size - 1 - layer;
+        boolean recording = CubeEvents.recording();
+        CubeEvent layerWait = recording
+                ? CubeEvents.begin(new LayerWaitEvent(), Side.getThreadTypeId(side), side, layer) : null;
+        try {
+            useLayer.acquire(realLayer);
+        } catch (InterruptedException e) {
+            scheduler.abortingProtocol();
+            Thread.currentThread().interrupt();
+            throw e;
         }
+        CubeEvents.commit(layerWait);
+
+        CubeEvent rotation = recording
+                ? CubeEvents.begin(new RotationEvent(), Side.getThreadTypeId(side), side, layer) : null;
+
+        beforeRotation.accept(side, layer);
+
+        long sequence = rotateState(side, layer);
+
+        afterRotation.accept(side, layer);
+
+        CubeEvents.commit(rotation);
+
+        useLayer.release(realLayer);
+
+        return sequence;
     }
 
-    private void setRowOfArray(int sideId, int row, int[] array) {
-        blocks[sideId][row] = array;
+    private long rotateState(int side, int layer) {
+        if (faceCounters != null) {
+            faceCounters.beforeRotation(stickers, side, layer);
+        }
+        stickers.rotate(side, layer);
+        return recordRotation(side, layer);
     }
 
-    private void rotateSideArray(Side side, int layer, boolean changeDirection) {
-        if (layer == 0) {
-            if (!changeDirection) {
-                rotateSideArrayClockwise(side.getId());
-            }
-            else {
-                rotateSideArrayCounterClockwise(side.getId());
-            }
+    private long recordRotation(int side, int layer) {
+        long sequence = journal != null ? journal.append(side, layer) : rotationSequence.incrementAndGet();
+        if (changeLog != null) {
+            changeLog.record(side, layer, sequence);
         }
-        else if (layer == size - 1) {
-            if (!changeDirection) {
-                rotateSideArrayCounterClockwise(side.getOpposite().getId());
-            }
-            else {
-                rotateSideArrayClockwise(side.getOpposite().getId());
-            }
+        if (publisher != null) {
+            publisher.publish(stickers, side, layer, sequence);
         }
+        return sequence;
     }
 
-    private boolean isFirstOrLastLayer(int layer) {
-        return layer == 0 || layer == size - 1;
+    public void apply(MoveSequence sequence) throws InterruptedException {
+        apply(sequence, CallbackMode.PER_MOVE);
     }
 
-    private void rotateNeighboursOfFront(int layer, boolean changeDirection) {
-        int[] arrayUp = getRowOfArray(Side.UP.getId(), size - 1 - layer);
-        int[] arrayLeft = getColumnOfArray(Side.LEFT.getId(), size - 1 - layer);
-        int[] arrayRight = getColumnOfArray(Side.RIGHT.getId(), layer);
-        int[] arrayDown = getRowOfArray(Side.DOWN.getId(), layer);
+    public void apply(MoveSequence sequence, CallbackMode callbackMode) throws InterruptedException {
+        if (sequence.getSize() != size) {
+            throw new IllegalArgumentException("sequence was compiled for size " + sequence.getSize());
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        if (sequence.length() == 0) {
+            return;
+        }
+
+        int threadTypeId = sequence.getThreadTypeId();
+        CubeEvent axisWait = CubeEvents.recording()
+                ? CubeEvents.begin(new AxisWaitEvent(), threadTypeId, sequence.getSide(0), sequence.getLayer(0)) : null;
+        scheduler.beginningProtocol(threadTypeId);
+        CubeEvents.commit(axisWait);
+        checkJournal();
 
-        if (!changeDirection) {
-            setColumnOfArray(Side.RIGHT.getId(), layer, arrayUp);
-            setRowOfArray(Side.UP.getId(), size - 1 - layer, revertArray(arrayLeft));
-            setRowOfArray(Side.DOWN.getId(), layer, revertArray(arrayRight));
-            setColumnOfArray(Side.LEFT.getId(), size - 1 - layer, arrayDown);
+        int[] realLayers = sequence.getRealLayers();
+        int acquired = 0;
+        try {
+            for (; acquired < realLayers.length; acquired++) {
+                useLayer.acquire(realLayers[acquired]);
+            }
+        } catch (InterruptedException e) {
+            for (int i = 0; i < acquired; i++) {
+                useLayer.release(realLayers[i]);
+            }
+            scheduler.abortingProtocol();
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+
+        int last = sequence.length() - 1;
+        if (callbackMode == CallbackMode.PER_SEQUENCE) {
+            beforeRotation.accept(sequence.getSide(0), sequence.getLayer(0));
         }
         else {
-            setColumnOfArray(Side.RIGHT.getId(), layer, revertArray(arrayDown));
-            setRowOfArray(Side.UP.getId(), size - 1 - layer, arrayRight);
-            setRowOfArray(Side.DOWN.getId(), layer, arrayLeft);
-            setColumnOfArray(Side.LEFT.getId(), size - 1 - layer, revertArray(arrayUp));
+            for (int move = 0; move <= last; move++) {
+                beforeRotation.accept(sequence.getSide(move), sequence.getLayer(move));
+            }
         }
-    }
 
-    private void rotateNeighboursOfUp(int layer, boolean changeDirection) {
-        int[] arrayBack = getRowOfArray(Side.BACK.getId(), layer);
-        int[] arrayRight = getRowOfArray(Side.RIGHT.getId(), layer);
-        int[] arrayFront = getRowOfArray(Side.FRONT.getId(), layer);
-        int[] arrayLeft = getRowOfArray(Side.LEFT.getId(), layer);
+        if (faceCounters != null) {
+            faceCounters.beforeApply(stickers, sequence);
+        }
+        stickers.apply(sequence);
+        long lastSequence = 0;
+        for (int move = 0; move <= last; move++) {
+            lastSequence = recordRotation(sequence.getSide(move), sequence.getLayer(move));
+        }
 
-        if (!changeDirection) {
-            setRowOfArray(Side.RIGHT.getId(), layer, arrayBack);
-            setRowOfArray(Side.FRONT.getId(), layer, arrayRight);
-            setRowOfArray(Side.LEFT.getId(), layer, arrayFront);
-            setRowOfArray(Side.BACK.getId(), layer, arrayLeft);
+        if (callbackMode == CallbackMode.PER_SEQUENCE) {
+            afterRotation.accept(sequence.getSide(last), sequence.getLayer(last));
         }
         else {
-            setRowOfArray(Side.RIGHT.getId(), layer, arrayFront);
-            setRowOfArray(Side.FRONT.getId(), layer, arrayLeft);
-            setRowOfArray(Side.LEFT.getId(), layer, arrayBack);
-            setRowOfArray(Side.BACK.getId(), layer, arrayRight);
+            for (int move = 0; move <= last; move++) {
+                afterRotation.accept(sequence.getSide(move), sequence.getLayer(move));
+            }
         }
-    }
 
-    int[] revertArray(int[] array) {
-        for (int i = 0; i < array.length / 2; i++) {
-            int temp = array[i];
-            array[i] = array[array.length - i - 1];
-            array[array.length - i - 1] = temp;
+        for (int realLayer : realLayers) {
+            useLayer.release(realLayer);
+        }
+
+        scheduler.endingProtocol();
+
+        if (journal != null) {
+            journal.awaitDurable(lastSequence);
         }
-        return array;
     }
 
-    private void rotateNeighboursOfRight(int layer, boolean changeDirection) {
-        int[] arrayUp = getColumnOfArray(Side.UP.getId(), size - 1 - layer);
-        int[] arrayBack = getColumnOfArray(Side.BACK.getId(), layer);
-        int[] arrayDown = getColumnOfArray(Side.DOWN.getId(), size - 1 - layer);
-        int[] arrayFront = getColumnOfArray(Side.FRONT.getId(), size - 1 - layer);
+    public CompletableFuture<Void> rotateAsync(int side, int layer) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+
+        scheduler.beginningProtocolAsync(Side.getThreadTypeId(side),
+                () -> executeAsync(() -> reserveLayerAsync(side, layer, result), result,
+                        scheduler::endingProtocolAsync));
+
+        return result;
+    }
 
-        if (!changeDirection) {
-            setColumnOfArray(Side.BACK.getId(), layer, revertArray(arrayUp));
-            setColumnOfArray(Side.DOWN.getId(), size - 1 - layer, revertArray(arrayBack));
-            setColumnOfArray(Side.FRONT.getId(), size - 1 - layer, arrayDown);
-            setColumnOfArray(Side.UP.getId(), size - 1 - layer, arrayFront);
+    private void reserveLayerAsync(int side, int layer, CompletableFuture<Void> result) {
+        if (result.isDone()) {
+            scheduler.endingProtocolAsync();
+            return;
         }
-        else {
-            setColumnOfArray(Side.BACK.getId(), layer, revertArray(arrayDown));
-            setColumnOfArray(Side.DOWN.getId(), size - 1 - layer, arrayFront);
-            setColumnOfArray(Side.FRONT.getId(), size - 1 - layer, arrayUp);
-            setColumnOfArray(Side.UP.getId(), size - 1 - layer, revertArray(arrayBack));
+
+        int realLayer = Side.getSideOfId(side).isDefault() ? layer : size - 1 - layer;
+        Runnable rotation = () -> rotateAdmittedAsync(side, layer, realLayer, result);
+        Runnable cleanup = () -> {
+            useLayer.release(realLayer);
+            scheduler.endingProtocolAsync();
+        };
+
+        if (useLayer.acquireOrEnqueue(realLayer, () -> executeAsync(rotation, result, cleanup))) {
+            rotation.run();
         }
     }
 
-    private void rotateSequential(int sideId, int layer) {
-        Side side = Side.getSideOfId(sideId);
-        boolean changeDirection = false;
+    private void rotateAdmittedAsync(int side, int layer, int realLayer, CompletableFuture<Void> result) {
+        Throwable failure = null;
+        long sequence = -1;
+        try {
+            if (!result.isDone()) {
+                if (journal != null) {
+                    journal.checkFailure();
+                }
+                CubeEvent rotation = CubeEvents.recording()
+                        ? CubeEvents.begin(new RotationEvent(), Side.getThreadTypeId(side), side, layer) : null;
 
-        if (!side.isDefault()) {
-            side = side.getOpposite();
-            layer = size - 1 - layer;
-            changeDirection = true;
-        }
+                beforeRotation.accept(side, layer);
+
+                sequence = rotateState(side, layer);
+
+                afterRotation.accept(side, layer);
+
+                CubeEvents.commit(rotation);
+            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            useLayer.release(realLayer);
 
-        if (isFirstOrLastLayer(layer)) {
-            rotateSideArray(side, layer, changeDirection);
+            scheduler.endingProtocolAsync();
         }
 
-        if (side == Side.FRONT) {
-            rotateNeighboursOfFront(layer, changeDirection);
+        if (failure != null) {
+            result.completeExceptionally(failure);
         }
-        else if (side == Side.RIGHT) {
-            rotateNeighboursOfRight(layer, changeDirection);
+        else if (journal != null && sequence >= 0) {
+            journal.whenDurable(sequence, () -> {
+                try {
+                    journal.checkFailure();
+                    result.complete(null);
+                } catch (UncheckedIOException e) {
+                    result.completeExceptionally(e);
+                }
+            });
         }
-        else if (side == Side.UP) {
-            rotateNeighboursOfUp(layer, changeDirection);
+        else {
+            result.complete(null);
         }
     }
 
+    public CompletableFuture<String> showAsync() {
+        checkShownFitsString();
+        CompletableFuture<String> result = new CompletableFuture<>();
 
-    private void beginningProtocol(int threadTypeId) throws InterruptedException {
-        lock.lock();
+        scheduler.beginningProtocolAsync(0,
+                () -> executeAsync(() -> showAdmittedAsync(result), result, scheduler::endingProtocolAsync));
+
+        return result;
+    }
+
+    private void showAdmittedAsync(CompletableFuture<String> result) {
+        CubeState snapshot = null;
+        String shown = null;
+        Throwable failure = null;
+        CubeEvent show = null;
         try {
-            while (currentThreadType == -1 && howManyWaiting > 0) {
-                waiting.await();
-            }
-            if (!(currentThreadType == threadTypeId || currentThreadType == -1)) {
-                howManyWaiting++;
-                while (!(currentThreadType == threadTypeId || currentThreadType == -1)) {
-                    try {
-                        entrance.await();
-                    } catch (InterruptedException e) {
-                        howManyWaiting--;
-                        if (howManyWaiting == 0) {
-                            waiting.signalAll();
-                        }
-                        Thread.currentThread().interrupt();
-                        throw e;
-                    }
+            if (!result.isDone()) {
+                show = CubeEvents.recording() ? CubeEvents.begin(new ShowEvent(), 0, -1, -1) : null;
+
+                beforeShowing.run();
+
+                if (showMode == ShowMode.SNAPSHOT) {
+                    snapshot = stickers.snapshot();
                 }
-                howManyWaiting--;
-                howManyThreadsActive++;
-                if (currentThreadType == -1) {
-                    currentThreadType = threadTypeId;
-                    waiting.signalAll();
+                else {
+                    shown = format(stickers);
                 }
+
+                afterShowing.run();
             }
-            else {
-                currentThreadType = threadTypeId;
-                howManyThreadsActive++;
-            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            scheduler.endingProtocolAsync();
         }
-        finally {
-            lock.unlock();
+
+        if (failure != null) {
+            result.completeExceptionally(failure);
+        }
+        else {
+            if (snapshot != null) {
+                shown = format(snapshot);
+            }
+            CubeEvents.commit(show);
+            result.complete(shown);
         }
     }
 
-    private void endingProtocol() {
-        lock.lock();
+    private void executeAsync(Runnable task, CompletableFuture<?> result, Runnable cleanup) {
         try {
-            howManyThreadsActive--;
-            if (howManyThreadsActive > 0) {
-                howManyToExit++;
-                while (howManyThreadsActive > 0) {
-                    exit.awaitUninterruptibly();
+            asyncExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            cleanup.run();
+            result.completeExceptionally(e);
+        }
+    }
+
+    public String show() throws InterruptedException {
+        checkShownFitsString();
+        return showWith(this::format, showMode == ShowMode.SNAPSHOT);
+    }
+
+    public void show(Appendable out) throws InterruptedException, IOException {
+        char[] chars = new char[SHOW_BUFFER_SIZE];
+        StringBuilder builder = out instanceof Writer ? null : new StringBuilder(SHOW_BUFFER_SIZE);
+
+        showTo((digits, length) -> {
+            if (builder == null) {
+                for (int i = 0; i < length; i++) {
+                    chars[i] = (char) digits[i];
                 }
-                howManyToExit--;
+                ((Writer) out).write(chars, 0, length);
             }
             else {
-                currentThreadType = -1;
-                exit.signalAll();
+                builder.setLength(0);
+                for (int i = 0; i < length; i++) {
+                    builder.append((char) digits[i]);
+                }
+                out.append(builder);
             }
+        });
+    }
 
-            if (howManyToExit == 0) {
-                entrance.signalAll();
+    public void show(WritableByteChannel channel) throws InterruptedException, IOException {
+        showTo((digits, length) -> {
+            ByteBuffer buffer = ByteBuffer.wrap(digits, 0, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
             }
+        });
+    }
+
+    public long[] showPacked() throws InterruptedException {
+        long[] packed = new long[PackedState.words(size)];
+        snapshotInto(packed);
+        return packed;
+    }
+
+    public void snapshotInto(long[] target) throws InterruptedException {
+        if (target.length < PackedState.words(size)) {
+            throw new IllegalArgumentException("target must hold " + PackedState.words(size) + " words");
         }
-        finally {
-            lock.unlock();
+        packTo((index, word) -> target[index] = word);
+    }
+
+    public void snapshotInto(ByteBuffer target) throws InterruptedException {
+        if (target.remaining() < PackedState.words(size) * Long.BYTES) {
+            throw new IllegalArgumentException("target must hold " + PackedState.words(size) + " words");
         }
+        packTo((index, word) -> target.putLong(word));
     }
 
-    public void rotate(int side, int layer) throws InterruptedException {
+    private interface WordSink {
+        void write(int index, long word);
+    }
+
+    private void packTo(WordSink sink) throws InterruptedException {
+        showWith(shown -> {
+            int faceSize = size * size;
+            byte[] digits = new byte[Math.min(SHOW_BUFFER_SIZE, faceSize)];
+            long word = 0;
+            int slot = 0;
+            int index = 0;
+            for (Side side : Side.values()) {
+                for (int from = 0; from < faceSize; from += digits.length) {
+                    int length = Math.min(digits.length, faceSize - from);
+                    shown.copyDigits(side.getId(), from, digits, 0, length);
+                    for (int i = 0; i < length; i++) {
+                        word |= (long) (digits[i] - '0') << (PackedState.BITS_PER_STICKER * slot);
+                        if (++slot == PackedState.STICKERS_PER_WORD) {
+                            sink.write(index++, word);
+                            word = 0;
+                            slot = 0;
+                        }
+                    }
+                }
+            }
+            if (slot > 0) {
+                sink.write(index, word);
+            }
+            return null;
+        }, showMode == ShowMode.SNAPSHOT);
+    }
+
+    private interface DigitSink {
+        void write(byte[] digits, int length) throws IOException;
+    }
+
+    private void showTo(DigitSink sink) throws InterruptedException, IOException {
+        showWith(shown -> {
+            writeDigits(shown, sink);
+            return null;
+        }, showMode == ShowMode.SNAPSHOT);
+    }
+
+    private interface StateReader<T, E extends Exception> {
+        T read(CubeState shown) throws E;
+    }
+
+    private <T, E extends Exception> T showWith(StateReader<T, E> reader, boolean snapshotFirst)
+            throws InterruptedException, E {
         if (Thread.currentThread().isInterrupted()) {
             throw new InterruptedException();
         }
-        beginningProtocol(Side.getThreadTypeId(side));
-
-        int realLayer = Side.getSideOfId(side).isDefault() ? layer : size - 1 - layer;
+        boolean recording = CubeEvents.recording();
+        CubeEvent axisWait = recording ? CubeEvents.begin(new AxisWaitEvent(), 0, -1, -1) : null;
+        scheduler.beginningProtocol(0);
+        CubeEvents.commit(axisWait);
+
+        CubeEvent show = recording ? CubeEvents.begin(new ShowEvent(), 0, -1, -1) : null;
+        CubeState snapshot = null;
+        T result = null;
         try {
-            useLayer[realLayer].acquire();
-        } catch (InterruptedException e) {
-            lock.lock();
-            howManyThreadsActive--;
-            if (howManyThreadsActive == 0) {
-                currentThreadType = -1;
-                exit.signalAll();
+            beforeShowing.run();
+
+            if (snapshotFirst) {
+                snapshot = stickers.snapshot();
             }
-            if (howManyToExit == 0) {
-                entrance.signalAll();
+            else {
+                result = reader.read(stickers);
             }
-            lock.unlock();
-            Thread.currentThread().interrupt();
-            throw e;
         }
+        finally {
+            afterShowing.run();
 
-        beforeRotation.accept(side, layer);
+            scheduler.endingProtocol();
+        }
+
+        if (snapshot != null) {
+            result = reader.read(snapshot);
+        }
+        CubeEvents.commit(show);
+        return result;
+    }
 
-        rotateSequential(side, layer);
+    private void writeDigits(CubeState shown, DigitSink sink) throws IOException {
+        int faceSize = size * size;
+        byte[] digits = new byte[Math.min(SHOW_BUFFER_SIZE, faceSize)];
 
-        afterRotation.accept(side, layer);
+        for (Side side : Side.values()) {
+            for (int from = 0; from < faceSize; from += digits.length) {
+                int length = Math.min(digits.length, faceSize - from);
+                shown.copyDigits(side.getId(), from, digits, 0, length);
+                sink.write(digits, length);
+            }
+        }
+    }
 
-        useLayer[realLayer].release();
+    private void checkShownFitsString() {
+        if (6L * size * size > MAX_SHOWN_STICKERS) {
+            throw new IllegalStateException("a cube of size " + size + " does not fit in a String, show it to a stream");
+        }
+    }
 
-        endingProtocol();
+    private String format(CubeState shown) {
+        StringBuilder result = new StringBuilder((int) (6L * size * size));
+        shown.appendTo(result);
+        return result.toString();
     }
 
-    public String show() throws InterruptedException {
+    public CubeDelta showSince(long version) throws InterruptedException {
+        if (changeLog == null) {
+            throw new IllegalStateException("change log is disabled");
+        }
+        return showWith(shown -> changeLog.since(shown, version), false);
+    }
+
+    public Flow.Publisher<CubeUpdate> updates() {
+        if (publisher == null) {
+            throw new IllegalStateException("updates are disabled");
+        }
+        return publisher;
+    }
+
+    private CubeUpdate snapshotUpdate() throws InterruptedException {
+        scheduler.beginningProtocol(0);
+        try {
+            return publisher.snapshot(stickers);
+        }
+        finally {
+            scheduler.endingProtocol();
+        }
+    }
+
+    public boolean isSolved() {
+        if (faceCounters == null) {
+            throw new IllegalStateException("solved tracking is disabled");
+        }
+        return faceCounters.isSolved();
+    }
+
+    public Set<Side> solvedFaces() {
+        if (faceCounters == null) {
+            throw new IllegalStateException("solved tracking is disabled");
+        }
+        EnumSet<Side> solved = EnumSet.noneOf(Side.class);
+        for (Side side : Side.values()) {
+            if (faceCounters.isSolved(side.getId())) {
+                solved.add(side);
+            }
+        }
+        return solved;
+    }
+
+    public long stateHash() throws InterruptedException {
+        if (!stateHash) {
+            throw new IllegalStateException("state hash is disabled");
+        }
         if (Thread.currentThread().isInterrupted()) {
             throw new InterruptedException();
         }
-        beginningProtocol(0);
 
-        beforeShowing.run();
+        scheduler.beginningProtocol(0);
+        try {
+            return stickers.stateHash();
+        }
+        finally {
+            scheduler.endingProtocol();
+        }
+    }
 
-        StringBuilder result = new StringBuilder();
-        for (Side side : Side.values()) {
-            for (int row = 0; row < size; row++) {
-                for (int column = 0; column < size; column++) {
-                    result.append(blocks[side.getId()][row][column]);
-                }
+    public long checkpoint() throws InterruptedException, IOException {
+        if (journal == null) {
+            throw new IllegalStateException("checkpoints require a journal");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        rethrowCheckpointFailure();
+
+        byte[] colors;
+        long sequence;
+        scheduler.beginningProtocol(0);
+        try {
+            colors = stickers.colors();
+            sequence = journal.lastSequence();
+        }
+        finally {
+            scheduler.endingProtocol();
+        }
+        try {
+            journal.awaitDurable(sequence);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        synchronized (checkpointLock) {
+            if (sequence > lastCheckpoint) {
+                Checkpoints.write(journalDirectory, size, sequence, colors);
+                Checkpoints.deleteBefore(journalDirectory, lastCheckpoint);
+                journal.deleteSegmentsBefore(lastCheckpoint);
+                lastCheckpoint = sequence;
             }
         }
+        return sequence;
+    }
 
-        afterShowing.run();
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            checkpointFailure.set(e);
+        }
+    }
 
-        endingProtocol();
+    private void rethrowCheckpointFailure() throws IOException {
+        Exception failure = checkpointFailure.getAndSet(null);
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
 
-        return result.toString();
+    public Exception lastCheckpointFailure() {
+        return checkpointFailure.get();
     }
 
+    @Override
+    public void close() throws IOException {
+        for (ObjectName objectName : metricsNames) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ignored) {
+
+            }
+        }
+        metricsNames.clear();
+        if (checkpointer != null) {
+            checkpointer.shutdownNow();
+            try {
+                checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (publisher != null) {
+            publisher.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (mappedStickers != null) {
+            mappedStickers.close();
+        }
+        rethrowCheckpointFailure();
+    }
 
     @Override
     public String toString() {
@@ -351,13 +830,176 @@ public class Cube {
         for (Side side : Side.values()) {
             result.append(side).append(":\n");
             for (int row = 0; row < size; row++) {
-                for (int column = 0; column < size; column++) {
-                    result.append(blocks[side.getId()][row][column]);
-                }
+                stickers.appendRowTo(result, side.getId(), row);
                 result.append("\n");
             }
         }
         return result.toString();
     }
 
+    public static final class Builder {
+        private final int size;
+        private IntIntConsumer beforeRotation = (side, layer) -> {};
+        private IntIntConsumer afterRotation = (side, layer) -> {};
+        private Runnable beforeShowing = () -> {};
+        private Runnable afterShowing = () -> {};
+        private ShowMode showMode = ShowMode.EXCLUSIVE;
+        private AxisScheduler scheduler;
+        private SchedulerMode schedulerMode = SchedulerMode.PHASE_BARRIER;
+        private Executor asyncExecutor = ForkJoinPool.commonPool();
+        private boolean metrics = false;
+        private boolean stateHash = false;
+        private boolean solvedTracking = false;
+        private int changeLogCapacity = 0;
+        private int updateBufferSize = 0;
+        private BackpressurePolicy backpressurePolicy;
+        private boolean updateDeltas = false;
+        private Executor updateExecutor;
+        private StateModel stateModel = StateModel.STICKERS;
+        private Path mappedFile;
+        private Path journal;
+        private long journalSegmentSize = 64L << 20;
+        private Duration checkpointInterval;
+
+        private Builder(int size) {
+            this.size = size;
+        }
+
+        public Builder beforeRotation(IntIntConsumer beforeRotation) {
+            this.beforeRotation = beforeRotation;
+            return this;
+        }
+
+        public Builder afterRotation(IntIntConsumer afterRotation) {
+            this.afterRotation = afterRotation;
+            return this;
+        }
+
+        public Builder beforeShowing(Runnable beforeShowing) {
+            this.beforeShowing = beforeShowing;
+            return this;
+        }
+
+        public Builder afterShowing(Runnable afterShowing) {
+            this.afterShowing = afterShowing;
+            return this;
+        }
+
+        public Builder schedulerMode(SchedulerMode schedulerMode) {
+            this.schedulerMode = schedulerMode;
+            this.scheduler = null;
+            return this;
+        }
+
+        public Builder scheduler(AxisScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public Builder showMode(ShowMode showMode) {
+            this.showMode = showMode;
+            return this;
+        }
+
+        public Builder asyncExecutor(Executor asyncExecutor) {
+            this.asyncExecutor = asyncExecutor;
+            return this;
+        }
+
+        public Builder stateModel(StateModel stateModel) {
+            this.stateModel = stateModel;
+            return this;
+        }
+
+        public Builder mappedFile(Path mappedFile) {
+            this.mappedFile = mappedFile;
+            return this;
+        }
+
+        public Builder journal(Path journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        public Builder journalSegmentSize(long journalSegmentSize) {
+            this.journalSegmentSize = journalSegmentSize;
+            return this;
+        }
+
+        public Builder checkpointInterval(Duration checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        public Builder metrics(boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder stateHash(boolean stateHash) {
+            this.stateHash = stateHash;
+            return this;
+        }
+
+        public Builder solvedTracking(boolean solvedTracking) {
+            this.solvedTracking = solvedTracking;
+            return this;
+        }
+
+        public Builder changeLog(int capacity) {
+            this.changeLogCapacity = capacity;
+            return this;
+        }
+
+        public Builder updates(int bufferSize, BackpressurePolicy backpressurePolicy) {
+            this.updateBufferSize = bufferSize;
+            this.backpressurePolicy = backpressurePolicy;
+            return this;
+        }
+
+        public Builder updateDeltas(boolean updateDeltas) {
+            this.updateDeltas = updateDeltas;
+            return this;
+        }
+
+        public Builder updateExecutor(Executor updateExecutor) {
+            this.updateExecutor = updateExecutor;
+            return this;
+        }
+
+        public Cube build() {
+            if (mappedFile != null && stateModel != StateModel.STICKERS) {
+                throw new IllegalArgumentException("a mapped file always uses the sticker model");
+            }
+            if (mappedFile != null && journal != null) {
+                throw new IllegalArgumentException("a mapped file is already persistent and cannot be journaled");
+            }
+            if (checkpointInterval != null && journal == null) {
+                throw new IllegalArgumentException("checkpoints require a journal");
+            }
+            if (checkpointInterval != null && (checkpointInterval.isNegative() || checkpointInterval.isZero())) {
+                throw new IllegalArgumentException("checkpointInterval must be positive");
+            }
+            if (updateBufferSize < 0) {
+                throw new IllegalArgumentException("update bufferSize must not be negative");
+            }
+            if (updateBufferSize > 0 && backpressurePolicy == null) {
+                throw new IllegalArgumentException("updates need a backpressure policy");
+            }
+            if (updateDeltas && updateBufferSize == 0) {
+                throw new IllegalArgumentException("update deltas require updates");
+            }
+            if (updateExecutor != null && updateBufferSize == 0) {
+                throw new IllegalArgumentException("an update executor requires updates");
+            }
+            if (changeLogCapacity < 0) {
+                throw new IllegalArgumentException("changeLog capacity must not be negative");
+            }
+            if (journalSegmentSize < 2 * RotationJournal.RECORD_SIZE) {
+                throw new IllegalArgumentException("journalSegmentSize must hold a header and at least one record");
+            }
+            return new Cube(this);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package concurrentcube;
+
+public final class CubeDelta {
+    private final long fromVersion;
+    private final long version;
+    private final int[] positions;
+    private final byte[] colors;
+
+    CubeDelta(long fromVersion, long version, int[] positions, byte[] colors) {
+        this.fromVersion = fromVersion;
+        this.version = version;
+        this.positions = positions;
+        this.colors = colors;
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isFull() {
+        return positions == null;
+    }
+
+    public int getCount() {
+        return colors.length;
+    }
+
+    public int getPosition(int i) {
+        return positions == null ? i : positions[i];
+    }
+
+    public int getColor(int i) {
+        return colors[i];
+    }
+
+    public void applyTo(char[] shown) {
+        if (positions == null && shown.length != colors.length) {
+            throw new IllegalArgumentException("a full delta needs " + colors.length + " stickers");
+        }
+        for (int i = 0; i < colors.length; i++) {
+            shown[getPosition(i)] = (char) ('0' + colors[i]);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package concurrentcube;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+@Category("Concurrent Cube")
+abstract class CubeEvent extends Event {
+    @Label("Side")
+    int side;
+
+    @Label("Layer")
+    int layer;
+
+    @Label("Thread Type")
+    int threadType;
+}
@@ -0,0 +1,61 @@
+package concurrentcube;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+final class CubeEvents {
+    private static volatile boolean recording = false;
+
+    static {
+        if (FlightRecorder.isAvailable()) {
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recorderInitialized(FlightRecorder recorder) {
+                    update(recorder);
+                }
+
+                @Override
+                public void recordingStateChanged(Recording changed) {
+                    update(FlightRecorder.getFlightRecorder());
+                }
+            });
+        }
+    }
+
+    private CubeEvents() {
+    }
+
+    private static synchronized void update(FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording candidate : recorder.getRecordings()) {
+            if (candidate.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+        recording = running;
+    }
+
+    static boolean recording() {
+        return recording;
+    }
+
+    static CubeEvent begin(CubeEvent event, int threadTypeId, int side, int layer) {
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.threadType = threadTypeId;
+        event.side = side;
+        event.layer = layer;
+        event.begin();
+        return event;
+    }
+
+    static void commit(CubeEvent event) {
+        if (event != null) {
+            event.commit();
+        }
+    }
+}
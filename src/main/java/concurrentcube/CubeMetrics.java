@@ -0,0 +1,109 @@
+package concurrentcube;
+
+public final class CubeMetrics {
+    private final Histogram[] axisWait;
+    private final long phaseSwitches;
+    private final Histogram cohortSizes;
+    private final long[] layerCollisions;
+    private final Histogram layerWait;
+    private final Histogram showStalls;
+
+    CubeMetrics(Histogram[] axisWait, long phaseSwitches, Histogram cohortSizes,
+                long[] layerCollisions, Histogram layerWait, Histogram showStalls) {
+        this.axisWait = axisWait;
+        this.phaseSwitches = phaseSwitches;
+        this.cohortSizes = cohortSizes;
+        this.layerCollisions = layerCollisions;
+        this.layerWait = layerWait;
+        this.showStalls = showStalls;
+    }
+
+    public Histogram getAxisWait(int threadTypeId) {
+        return axisWait[threadTypeId];
+    }
+
+    public long getPhaseSwitches() {
+        return phaseSwitches;
+    }
+
+    public Histogram getCohortSizes() {
+        return cohortSizes;
+    }
+
+    public long getLayerCollisions(int layer) {
+        return layerCollisions[layer];
+    }
+
+    public long[] getLayerCollisions() {
+        return layerCollisions.clone();
+    }
+
+    public Histogram getLayerWait() {
+        return layerWait;
+    }
+
+    public Histogram getShowStalls() {
+        return showStalls;
+    }
+
+    public static final class Histogram {
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Histogram(long[] buckets, long sum, long max) {
+            this.buckets = buckets;
+            this.sum = sum;
+            this.max = max;
+
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            this.count = count;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        public long getBucketUpperBound(int bucket) {
+            return bucket == 0 ? 0 : bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(getBucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package concurrentcube;
+
+import java.util.function.ToLongFunction;
+
+class CubeMetricsBean implements CubeMetricsMXBean {
+    private static final int THREAD_TYPES = 4;
+
+    private final MetricsRecorder recorder;
+
+    CubeMetricsBean(MetricsRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    private long[] perAxis(CubeMetrics metrics, ToLongFunction<CubeMetrics.Histogram> value) {
+        long[] result = new long[THREAD_TYPES];
+        for (int i = 0; i < THREAD_TYPES; i++) {
+            result[i] = value.applyAsLong(metrics.getAxisWait(i));
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getAxisWaitCount() {
+        return perAxis(recorder.snapshot(), CubeMetrics.Histogram::getCount);
+    }
+
+    @Override
+    public long[] getAxisWaitNanosTotal() {
+        return perAxis(recorder.snapshot(), CubeMetrics.Histogram::getSum);
+    }
+
+    @Override
+    public long[] getAxisWaitNanosMax() {
+        return perAxis(recorder.snapshot(), CubeMetrics.Histogram::getMax);
+    }
+
+    @Override
+    public long[] getAxisWaitNanosP99() {
+        return perAxis(recorder.snapshot(), histogram -> histogram.getPercentile(99));
+    }
+
+    @Override
+    public long getPhaseSwitches() {
+        return recorder.snapshot().getPhaseSwitches();
+    }
+
+    @Override
+    public double getMeanCohortSize() {
+        return recorder.snapshot().getCohortSizes().getMean();
+    }
+
+    @Override
+    public long getMaxCohortSize() {
+        return recorder.snapshot().getCohortSizes().getMax();
+    }
+
+    @Override
+    public long[] getLayerCollisions() {
+        return recorder.snapshot().getLayerCollisions();
+    }
+
+    @Override
+    public long getLayerWaitNanosTotal() {
+        return recorder.snapshot().getLayerWait().getSum();
+    }
+
+    @Override
+    public long getLayerWaitNanosP99() {
+        return recorder.snapshot().getLayerWait().getPercentile(99);
+    }
+
+    @Override
+    public long getShowStalls() {
+        return recorder.snapshot().getShowStalls().getCount();
+    }
+
+    @Override
+    public long getShowStallNanosTotal() {
+        return recorder.snapshot().getShowStalls().getSum();
+    }
+}
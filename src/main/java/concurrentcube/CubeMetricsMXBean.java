@@ -0,0 +1,27 @@
+package concurrentcube;
+
+public interface CubeMetricsMXBean {
+    long[] getAxisWaitCount();
+
+    long[] getAxisWaitNanosTotal();
+
+    long[] getAxisWaitNanosMax();
+
+    long[] getAxisWaitNanosP99();
+
+    long getPhaseSwitches();
+
+    double getMeanCohortSize();
+
+    long getMaxCohortSize();
+
+    long[] getLayerCollisions();
+
+    long getLayerWaitNanosTotal();
+
+    long getLayerWaitNanosP99();
+
+    long getShowStalls();
+
+    long getShowStallNanosTotal();
+}
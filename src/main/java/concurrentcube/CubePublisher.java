@@ -0,0 +1,331 @@
+package concurrentcube;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+class CubePublisher implements Flow.Publisher<CubeUpdate> {
+    private static final int MIN_INTAKE_CAPACITY = 4096;
+
+    interface SnapshotSource {
+        CubeUpdate snapshot() throws InterruptedException;
+    }
+
+    private final int bufferSize;
+    private final BackpressurePolicy policy;
+    private final boolean deltas;
+    private final Executor executor;
+    private final SnapshotSource snapshots;
+
+    private final AtomicLong sequence;
+    private final AtomicReferenceArray<CubeUpdate> intake;
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private volatile boolean signalled;
+
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile boolean closed;
+
+    CubePublisher(int bufferSize, BackpressurePolicy policy, boolean deltas, long sequence, Executor executor,
+                  SnapshotSource snapshots) {
+        this.bufferSize = bufferSize;
+        this.sequence = new AtomicLong(sequence);
+        this.policy = policy;
+        this.deltas = deltas;
+        this.executor = executor;
+        this.snapshots = snapshots;
+        this.intake = new AtomicReferenceArray<>(Math.max(bufferSize, MIN_INTAKE_CAPACITY));
+    }
+
+    void publish(CubeState state, int side, int layer, long next) {
+        CubeDelta delta = deltas ? ChangeLog.ofMove(state, side, layer, next) : null;
+        intake.set(slot(next), new CubeUpdate(next, side, layer, delta));
+        sequence.accumulateAndGet(next, Math::max);
+        if (subscriptions.length > 0) {
+            scheduleDispatch();
+        }
+    }
+
+    CubeUpdate snapshot(CubeState state) {
+        long current = sequence.get();
+        return new CubeUpdate(current, -1, -1, ChangeLog.full(state, current, current));
+    }
+
+    static Executor dispatcher() {
+        return new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "cube-updates");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % intake.length());
+    }
+
+    private void scheduleDispatch() {
+        signalled = true;
+        if (dispatching.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::dispatch);
+            } catch (RejectedExecutionException e) {
+                dispatching.set(false);
+            }
+        }
+    }
+
+    private void dispatch() {
+        do {
+            signalled = false;
+            dispatchAvailable();
+            dispatching.set(false);
+        } while (signalled && dispatching.compareAndSet(false, true));
+    }
+
+    private void dispatchAvailable() {
+        long current = sequence.get();
+        for (Subscription subscription : subscriptions) {
+            subscription.dispatch(current);
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CubeUpdate> subscriber) {
+        Objects.requireNonNull(subscriber);
+        Subscription subscription = new Subscription(subscriber, sequence.get());
+        subscriber.onSubscribe(subscription);
+        synchronized (this) {
+            Subscription[] current = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+            current[subscriptions.length] = subscription;
+            subscriptions = current;
+        }
+        if (closed) {
+            subscription.complete();
+        }
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] remaining = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, remaining, 0, i);
+                System.arraycopy(current, i + 1, remaining, i, current.length - i - 1);
+                subscriptions = remaining;
+                return;
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super CubeUpdate> subscriber;
+        private final ArrayDeque<CubeUpdate> buffer = new ArrayDeque<>();
+        private long dispatched;
+        private long offered;
+        private long demand;
+        private boolean snapshotPending;
+        private boolean waitingForSpace;
+        private boolean draining;
+        private boolean completing;
+        private boolean done;
+
+        Subscription(Flow.Subscriber<? super CubeUpdate> subscriber, long offered) {
+            this.subscriber = subscriber;
+            this.dispatched = offered;
+            this.offered = offered;
+        }
+
+        void dispatch(long current) {
+            while (dispatched < current) {
+                long next = dispatched + 1;
+                CubeUpdate update = intake.get(slot(next));
+                if (update == null || update.getSequence() < next) {
+                    return;
+                }
+                if (update.getSequence() > next) {
+                    long lost = Math.max(next, update.getSequence() - intake.length());
+                    lost(lost);
+                    dispatched = lost;
+                    continue;
+                }
+                if (!offer(update)) {
+                    return;
+                }
+                dispatched = next;
+            }
+        }
+
+        boolean offer(CubeUpdate update) {
+            synchronized (this) {
+                if (done || update.getSequence() <= offered) {
+                    return true;
+                }
+                if (buffer.size() >= bufferSize) {
+                    if (policy == BackpressurePolicy.BLOCK) {
+                        waitingForSpace = true;
+                        return false;
+                    }
+                    offered = update.getSequence();
+                    if (policy == BackpressurePolicy.DROP) {
+                        return true;
+                    }
+                    buffer.clear();
+                    snapshotPending = true;
+                }
+                else {
+                    offered = update.getSequence();
+                    buffer.add(update);
+                }
+            }
+            scheduleDrain();
+            return true;
+        }
+
+        void lost(long through) {
+            synchronized (this) {
+                if (done || through <= offered) {
+                    return;
+                }
+                offered = through;
+                if (policy == BackpressurePolicy.DROP) {
+                    return;
+                }
+                buffer.clear();
+                snapshotPending = true;
+            }
+            scheduleDrain();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completing = true;
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("request must be positive"));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            boolean wasWaiting;
+            synchronized (this) {
+                done = true;
+                buffer.clear();
+                wasWaiting = waitingForSpace;
+                waitingForSpace = false;
+            }
+            remove(this);
+            if (wasWaiting) {
+                scheduleDispatch();
+            }
+        }
+
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (draining || done) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                CubeUpdate next;
+                boolean wakeDispatcher;
+                boolean completed = false;
+                synchronized (this) {
+                    if (!done && completing && buffer.isEmpty() && !snapshotPending) {
+                        done = true;
+                        completed = true;
+                    }
+                }
+                if (completed) {
+                    remove(this);
+                    subscriber.onComplete();
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    return;
+                }
+                synchronized (this) {
+                    if (done || demand == 0 || (buffer.isEmpty() && !snapshotPending)) {
+                        draining = false;
+                        return;
+                    }
+                    next = snapshotPending ? null : buffer.poll();
+                    snapshotPending = false;
+                    demand--;
+                    wakeDispatcher = waitingForSpace;
+                    waitingForSpace = false;
+                }
+                if (wakeDispatcher) {
+                    scheduleDispatch();
+                }
+
+                if (next == null) {
+                    try {
+                        next = snapshots.snapshot();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        synchronized (this) {
+                            snapshotPending = true;
+                            demand++;
+                            draining = false;
+                        }
+                        return;
+                    }
+                    long version = next.getSequence();
+                    synchronized (this) {
+                        buffer.removeIf(update -> update.getSequence() <= version);
+                        offered = Math.max(offered, version);
+                    }
+                }
+
+                try {
+                    subscriber.onNext(next);
+                } catch (Throwable e) {
+                    cancel();
+                    subscriber.onError(e);
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
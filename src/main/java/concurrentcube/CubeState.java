@@ -0,0 +1,39 @@
+package concurrentcube;
+
+interface CubeState {
+    int getSize();
+
+    void rotate(int sideId, int layer);
+
+    void apply(MoveSequence sequence);
+
+    CubeState snapshot();
+
+    void load(byte[] colors);
+
+    void trackHash();
+
+    long stateHash();
+
+    byte get(int sideId, int row, int column);
+
+    default byte[] colors() {
+        int size = getSize();
+        byte[] colors = new byte[6 * size * size];
+        int i = 0;
+        for (int sideId = 0; sideId < 6; sideId++) {
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    colors[i++] = get(sideId, row, column);
+                }
+            }
+        }
+        return colors;
+    }
+
+    void appendTo(StringBuilder result);
+
+    void copyDigits(int sideId, int from, byte[] target, int offset, int length);
+
+    void appendRowTo(StringBuilder result, int sideId, int row);
+}
@@ -0,0 +1,35 @@
+package concurrentcube;
+
+public final class CubeUpdate {
+    private final long sequence;
+    private final int side;
+    private final int layer;
+    private final CubeDelta delta;
+
+    CubeUpdate(long sequence, int side, int layer, CubeDelta delta) {
+        this.sequence = sequence;
+        this.side = side;
+        this.layer = layer;
+        this.delta = delta;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getSide() {
+        return side;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    public CubeDelta getDelta() {
+        return delta;
+    }
+
+    public boolean isSnapshot() {
+        return side < 0;
+    }
+}
@@ -0,0 +1,285 @@
+package concurrentcube;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CubieState implements CubeState {
+    static final int SIZE = 3;
+
+    private static final int FACE_SIZE = SIZE * SIZE;
+    private static final int STICKERS = 6 * FACE_SIZE;
+    private static final int POSITIONS = SIZE * SIZE * SIZE;
+    private static final int ORIENTATIONS = 6;
+    private static final int VALUES = POSITIONS * ORIENTATIONS;
+
+    private static final int[][] PERMUTATIONS = {
+            {0, 1, 2}, {1, 0, 2}, {0, 2, 1}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    private static final int[] stickerPosition = new int[STICKERS];
+    private static final int[] stickerSlot = new int[STICKERS];
+    private static final int[][] positionStickers = new int[POSITIONS][];
+    private static final byte[][] transitions = new byte[ORIENTATIONS][VALUES];
+    private static final byte[][] colors = new byte[VALUES][3];
+    private static final byte[][][] moves = new byte[6][SIZE][];
+
+    static {
+        int[] slots = new int[POSITIONS];
+        for (int sticker = 0; sticker < STICKERS; sticker++) {
+            int position = positionOf(sticker / FACE_SIZE, sticker % FACE_SIZE / SIZE, sticker % SIZE);
+            stickerPosition[sticker] = position;
+            stickerSlot[sticker] = slots[position]++;
+        }
+        for (int position = 0; position < POSITIONS; position++) {
+            positionStickers[position] = new int[slots[position]];
+        }
+        for (int sticker = 0; sticker < STICKERS; sticker++) {
+            positionStickers[stickerPosition[sticker]][stickerSlot[sticker]] = sticker;
+        }
+
+        for (int value = 0; value < VALUES; value++) {
+            int piece = value / ORIENTATIONS;
+            int[] permutation = PERMUTATIONS[value % ORIENTATIONS];
+            int[] pieceStickers = positionStickers[piece];
+            for (int slot = 0; slot < pieceStickers.length; slot++) {
+                if (permutation[slot] < pieceStickers.length) {
+                    colors[value][slot] = (byte) (pieceStickers[permutation[slot]] / FACE_SIZE);
+                }
+            }
+            for (int sigma = 0; sigma < ORIENTATIONS; sigma++) {
+                transitions[sigma][value] = (byte) (piece * ORIENTATIONS + compose(permutation, PERMUTATIONS[sigma]));
+            }
+        }
+
+        for (int sideId = 0; sideId < 6; sideId++) {
+            for (int layer = 0; layer < SIZE; layer++) {
+                moves[sideId][layer] = compileMove(sideId, layer);
+            }
+        }
+    }
+
+    private final byte[] cubies = new byte[POSITIONS];
+    private AtomicLong hash;
+
+    CubieState(int size) {
+        if (size != SIZE) {
+            throw new IllegalArgumentException("the cubie model is only available for size " + SIZE);
+        }
+        for (int position = 0; position < POSITIONS; position++) {
+            cubies[position] = (byte) (position * ORIENTATIONS);
+        }
+    }
+
+    private CubieState(CubieState other) {
+        System.arraycopy(other.cubies, 0, cubies, 0, POSITIONS);
+    }
+
+    private static int positionOf(int sideId, int row, int column) {
+        int last = SIZE - 1;
+        int x, y, z;
+        switch (Side.getSideOfId(sideId)) {
+            case UP:
+                x = column; y = last; z = row;
+                break;
+            case LEFT:
+                x = 0; y = last - row; z = column;
+                break;
+            case FRONT:
+                x = column; y = last - row; z = last;
+                break;
+            case RIGHT:
+                x = last; y = last - row; z = last - column;
+                break;
+            case BACK:
+                x = last - column; y = last - row; z = 0;
+                break;
+            default:
+                x = column; y = 0; z = last - row;
+                break;
+        }
+        return (x * SIZE + y) * SIZE + z;
+    }
+
+    private static int compose(int[] permutation, int[] sigma) {
+        for (int i = 0; i < ORIENTATIONS; i++) {
+            int[] candidate = PERMUTATIONS[i];
+            if (candidate[0] == permutation[sigma[0]] && candidate[1] == permutation[sigma[1]]
+                    && candidate[2] == permutation[sigma[2]]) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static int indexOf(int[] permutation) {
+        for (int i = 0; i < ORIENTATIONS; i++) {
+            if (Arrays.equals(PERMUTATIONS[i], permutation)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static byte[] compileMove(int sideId, int layer) {
+        Stickers traced = Stickers.labelled(SIZE);
+        traced.rotate(sideId, layer);
+
+        int[] source = new int[POSITIONS];
+        int[] sigma = new int[POSITIONS];
+        for (int position = 0; position < POSITIONS; position++) {
+            int[] slots = positionStickers[position];
+            source[position] = position;
+            if (slots.length == 0) {
+                continue;
+            }
+
+            int[] permutation = {0, 1, 2};
+            for (int slot = 0; slot < slots.length; slot++) {
+                int sticker = slots[slot];
+                int label = traced.get(sticker / FACE_SIZE, sticker % FACE_SIZE / SIZE, sticker % SIZE) & 0xFF;
+                if (slot > 0 && stickerPosition[label] != source[position]) {
+                    throw new IllegalStateException("stickers of one cubie moved apart");
+                }
+                source[position] = stickerPosition[label];
+                permutation[slot] = stickerSlot[label];
+            }
+            sigma[position] = indexOf(permutation);
+        }
+
+        byte[] cycles = new byte[8 * POSITIONS];
+        boolean[] visited = new boolean[POSITIONS];
+        int length = 0;
+        for (int start = 0; start < POSITIONS; start++) {
+            if (visited[start] || (source[start] == start && sigma[start] == 0)) {
+                continue;
+            }
+            int position = start;
+            for (int i = 0; i < 4; i++) {
+                visited[position] = true;
+                cycles[length + i] = (byte) position;
+                cycles[length + 4 + i] = (byte) sigma[position];
+                position = source[position];
+            }
+            if (position != start) {
+                throw new IllegalStateException("quarter turn is not a product of 4-cycles");
+            }
+            length += 8;
+        }
+        return Arrays.copyOf(cycles, length);
+    }
+
+    @Override
+    public int getSize() {
+        return SIZE;
+    }
+
+    @Override
+    public void rotate(int sideId, int layer) {
+        if (hash == null) {
+            rotateUntracked(sideId, layer);
+            return;
+        }
+        long before = StateHash.ofMove(this, sideId, layer);
+        rotateUntracked(sideId, layer);
+        hash.accumulateAndGet(before ^ StateHash.ofMove(this, sideId, layer), StateHash::xor);
+    }
+
+    private void rotateUntracked(int sideId, int layer) {
+        byte[] cycles = moves[sideId][layer];
+        byte[] cubies = this.cubies;
+        for (int i = 0; i < cycles.length; i += 8) {
+            int first = cycles[i];
+            int second = cycles[i + 1];
+            int third = cycles[i + 2];
+            int fourth = cycles[i + 3];
+
+            byte temp = cubies[first];
+            cubies[first] = transitions[cycles[i + 4]][cubies[second] & 0xFF];
+            cubies[second] = transitions[cycles[i + 5]][cubies[third] & 0xFF];
+            cubies[third] = transitions[cycles[i + 6]][cubies[fourth] & 0xFF];
+            cubies[fourth] = transitions[cycles[i + 7]][temp & 0xFF];
+        }
+    }
+
+    @Override
+    public void trackHash() {
+        hash = new AtomicLong(StateHash.of(this));
+    }
+
+    @Override
+    public long stateHash() {
+        return hash.get();
+    }
+
+    @Override
+    public void load(byte[] colors) {
+        for (int position = 0; position < POSITIONS; position++) {
+            int[] slots = positionStickers[position];
+            int found = -1;
+            for (int value = 0; value < VALUES && found == -1 && slots.length > 0; value++) {
+                if (positionStickers[value / ORIENTATIONS].length != slots.length) {
+                    continue;
+                }
+                boolean matches = true;
+                for (int slot = 0; slot < slots.length; slot++) {
+                    matches &= PERMUTATIONS[value % ORIENTATIONS][slot] < slots.length
+                            && CubieState.colors[value][slot] == colors[slots[slot]];
+                }
+                if (matches) {
+                    found = value;
+                }
+            }
+            if (slots.length > 0 && found == -1) {
+                throw new IllegalArgumentException("colors do not describe a 3x3 cube");
+            }
+            cubies[position] = (byte) (slots.length > 0 ? found : position * ORIENTATIONS);
+        }
+        if (hash != null) {
+            hash.set(StateHash.of(this));
+        }
+    }
+
+    @Override
+    public void apply(MoveSequence sequence) {
+        for (int move = 0; move < sequence.length(); move++) {
+            rotate(sequence.getSide(move), sequence.getLayer(move));
+        }
+    }
+
+    @Override
+    public CubeState snapshot() {
+        return new CubieState(this);
+    }
+
+    private byte color(int sticker) {
+        return colors[cubies[stickerPosition[sticker]] & 0xFF][stickerSlot[sticker]];
+    }
+
+    @Override
+    public byte get(int sideId, int row, int column) {
+        return color((sideId * SIZE + row) * SIZE + column);
+    }
+
+    @Override
+    public void appendTo(StringBuilder result) {
+        for (int sticker = 0; sticker < STICKERS; sticker++) {
+            result.append((char) ('0' + color(sticker)));
+        }
+    }
+
+    @Override
+    public void copyDigits(int sideId, int from, byte[] target, int offset, int length) {
+        int start = sideId * FACE_SIZE + from;
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = (byte) ('0' + color(start + i));
+        }
+    }
+
+    @Override
+    public void appendRowTo(StringBuilder result, int sideId, int row) {
+        int start = (sideId * SIZE + row) * SIZE;
+        for (int column = 0; column < SIZE; column++) {
+            result.append((char) ('0' + color(start + column)));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package concurrentcube;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+class FaceCounters {
+    private static final int COLORS = 6;
+
+    private final int size;
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(6 * COLORS);
+    private final AtomicIntegerArray colorsOnFace = new AtomicIntegerArray(6);
+
+    FaceCounters(CubeState state) {
+        this.size = state.getSize();
+
+        for (int sideId = 0; sideId < 6; sideId++) {
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    count(sideId, state.get(sideId, row, column), 1);
+                }
+            }
+        }
+    }
+
+    boolean isSolved() {
+        for (int sideId = 0; sideId < 6; sideId++) {
+            if (colorsOnFace.get(sideId) != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isSolved(int sideId) {
+        return colorsOnFace.get(sideId) == 1;
+    }
+
+    private void count(int sideId, int color, int delta) {
+        int index = sideId * COLORS + color;
+        if (delta > 0) {
+            if (counts.getAndIncrement(index) == 0) {
+                colorsOnFace.incrementAndGet(sideId);
+            }
+        }
+        else if (counts.decrementAndGet(index) == 0) {
+            colorsOnFace.decrementAndGet(sideId);
+        }
+    }
+
+    private void countSegment(CubeState state, int axis, int layer, int segment, int targetId, int delta) {
+        int sideId = MoveGeometry.segmentSide(axis, segment);
+        int row = MoveGeometry.segmentRow(size, axis, layer, segment);
+        int column = MoveGeometry.segmentColumn(size, axis, layer, segment);
+        int rowStep = MoveGeometry.segmentRowStep(axis, segment);
+        int columnStep = MoveGeometry.segmentColumnStep(axis, segment);
+        for (int i = 0; i < size; i++) {
+            count(targetId, state.get(sideId, row, column), delta);
+            row += rowStep;
+            column += columnStep;
+        }
+    }
+
+    void beforeRotation(CubeState state, int sideId, int layer) {
+        int axis = MoveGeometry.axis(sideId);
+        int realLayer = MoveGeometry.realLayer(size, sideId, layer);
+        boolean reversed = MoveGeometry.isReversed(sideId);
+
+        for (int segment = 0; segment < MoveGeometry.SEGMENTS; segment++) {
+            int receiver = MoveGeometry.receiver(segment, reversed);
+            countSegment(state, axis, realLayer, segment, MoveGeometry.segmentSide(axis, receiver), 1);
+        }
+        for (int segment = 0; segment < MoveGeometry.SEGMENTS; segment++) {
+            countSegment(state, axis, realLayer, segment, MoveGeometry.segmentSide(axis, segment), -1);
+        }
+    }
+
+    void beforeApply(CubeState state, MoveSequence sequence) {
+        int[] targets = sequence.getTargets();
+        int[] sources = sequence.getSources();
+        int faceSize = size * size;
+
+        for (int i = 0; i < targets.length; i++) {
+            count(targets[i] / faceSize, colorAt(state, sources[i]), 1);
+        }
+        for (int target : targets) {
+            count(target / faceSize, colorAt(state, target), -1);
+        }
+    }
+
+    private int colorAt(CubeState state, int position) {
+        int faceSize = size * size;
+        int index = position % faceSize;
+        return state.get(position / faceSize, index / size, index % size);
+    }
+}
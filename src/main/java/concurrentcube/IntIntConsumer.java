@@ -0,0 +1,6 @@
+package concurrentcube;
+
+@FunctionalInterface
+public interface IntIntConsumer {
+    void accept(int side, int layer);
+}
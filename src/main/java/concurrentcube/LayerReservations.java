@@ -0,0 +1,157 @@
+package concurrentcube;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+class LayerReservations {
+    private final AtomicLongArray reserved;
+    private final AtomicReferenceArray<ConcurrentLinkedQueue<Waiter>> waiters;
+    private final MetricsRecorder metrics;
+
+    private static final class Waiter {
+        private final Thread thread;
+        private final int layer;
+        private final Runnable onAcquired;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        private Waiter(Thread thread, int layer, Runnable onAcquired) {
+            this.thread = thread;
+            this.layer = layer;
+            this.onAcquired = onAcquired;
+        }
+    }
+
+    LayerReservations(int size, MetricsRecorder metrics) {
+        this.metrics = metrics;
+        reserved = new AtomicLongArray((size + 63) >>> 6);
+        waiters = new AtomicReferenceArray<>(size);
+    }
+
+    private ConcurrentLinkedQueue<Waiter> waitersOf(int layer) {
+        ConcurrentLinkedQueue<Waiter> queue = waiters.get(layer);
+        if (queue == null) {
+            waiters.compareAndSet(layer, null, new ConcurrentLinkedQueue<>());
+            queue = waiters.get(layer);
+        }
+        return queue;
+    }
+
+    boolean tryAcquire(int layer) {
+        int word = layer >>> 6;
+        long bit = 1L << layer;
+        while (true) {
+            long current = reserved.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (reserved.compareAndSet(word, current, current | bit)) {
+                return true;
+            }
+        }
+    }
+
+    void acquire(int layer) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (tryAcquire(layer)) {
+            return;
+        }
+
+        long start = 0;
+        if (metrics != null) {
+            metrics.layerCollision(layer);
+            start = System.nanoTime();
+        }
+
+        Waiter waiter = new Waiter(Thread.currentThread(), layer, null);
+        ConcurrentLinkedQueue<Waiter> queue = waitersOf(layer);
+        queue.add(waiter);
+        try {
+            while (!tryAcquire(layer)) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+        finally {
+            queue.remove(waiter);
+        }
+
+        if (metrics != null) {
+            metrics.layerWait(System.nanoTime() - start);
+        }
+    }
+
+    boolean acquireOrEnqueue(int layer, Runnable onAcquired) {
+        if (tryAcquire(layer)) {
+            return true;
+        }
+
+        long start = metrics != null ? System.nanoTime() : 0;
+        Runnable acquired = onAcquired;
+        if (metrics != null) {
+            metrics.layerCollision(layer);
+            acquired = () -> {
+                metrics.layerWait(System.nanoTime() - start);
+                onAcquired.run();
+            };
+        }
+
+        Waiter waiter = new Waiter(null, layer, acquired);
+        waitersOf(layer).add(waiter);
+        if (!tryHandOver(waiter)) {
+            return false;
+        }
+        if (metrics != null) {
+            metrics.layerWait(System.nanoTime() - start);
+        }
+        return true;
+    }
+
+    private boolean isReserved(int layer) {
+        return (reserved.get(layer >>> 6) & (1L << layer)) != 0;
+    }
+
+    private boolean tryHandOver(Waiter waiter) {
+        while (waiter.claimed.compareAndSet(false, true)) {
+            if (tryAcquire(waiter.layer)) {
+                waiters.get(waiter.layer).remove(waiter);
+                return true;
+            }
+            waiter.claimed.set(false);
+            if (isReserved(waiter.layer)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    void release(int layer) {
+        int word = layer >>> 6;
+        long bit = 1L << layer;
+        while (true) {
+            long current = reserved.get(word);
+            if (reserved.compareAndSet(word, current, current & ~bit)) {
+                break;
+            }
+        }
+
+        ConcurrentLinkedQueue<Waiter> queue = waiters.get(layer);
+        if (queue != null && !queue.isEmpty()) {
+            for (Waiter waiter : queue) {
+                if (waiter.thread != null) {
+                    LockSupport.unpark(waiter.thread);
+                }
+                else if (tryHandOver(waiter)) {
+                    waiter.onAcquired.run();
+                    return;
+                }
+            }
+        }
+    }
+}
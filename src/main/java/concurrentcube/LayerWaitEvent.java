@@ -0,0 +1,11 @@
+package concurrentcube;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("concurrentcube.LayerWait")
+@Label("Layer Wait")
+@Description("Time a rotation spent waiting for its layer to be released")
+class LayerWaitEvent extends CubeEvent {
+}
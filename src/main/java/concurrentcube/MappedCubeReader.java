@@ -0,0 +1,76 @@
+package concurrentcube;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class MappedCubeReader {
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    private MappedCubeReader(MappedByteBuffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    public static MappedCubeReader open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.nativeOrder());
+
+        if (buffer.capacity() < MappedStickers.HEADER_SIZE
+                || buffer.getInt(MappedStickers.MAGIC_OFFSET) != MappedStickers.MAGIC
+                || buffer.getInt(MappedStickers.FORMAT_OFFSET) != MappedStickers.FORMAT) {
+            throw new IOException(file + " is not a mapped cube file");
+        }
+        int size = buffer.getInt(MappedStickers.SIZE_OFFSET);
+        if (buffer.capacity() != MappedStickers.fileLength(size)) {
+            throw new IOException(file + " is not a mapped cube file");
+        }
+        return new MappedCubeReader(buffer, size);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getVersion() {
+        return (long) MappedStickers.LONGS.getAcquire(buffer, MappedStickers.VERSION_OFFSET);
+    }
+
+    public long copyStickers(byte[] target) {
+        if (target.length < 6 * size * size) {
+            throw new IllegalArgumentException("target must hold " + 6 * size * size + " stickers");
+        }
+        while (true) {
+            long version = getVersion();
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            for (int i = 0; i < 6 * size * size; i++) {
+                target[i] = buffer.get(MappedStickers.HEADER_SIZE + i);
+            }
+            VarHandle.acquireFence();
+            if (getVersion() == version) {
+                return version;
+            }
+        }
+    }
+
+    public String show() {
+        byte[] digits = new byte[6 * size * size];
+        copyStickers(digits);
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] += '0';
+        }
+        return new String(digits, StandardCharsets.US_ASCII);
+    }
+}
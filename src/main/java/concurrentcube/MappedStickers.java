@@ -0,0 +1,386 @@
+package concurrentcube;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+class MappedStickers implements CubeState, PhaseListener, Closeable {
+    static final int MAGIC = 0x43554245;
+    static final int FORMAT = 2;
+    static final int MAGIC_OFFSET = 0;
+    static final int FORMAT_OFFSET = 4;
+    static final int SIZE_OFFSET = 8;
+    static final int VERSION_OFFSET = 16;
+    static final int HEADER_SIZE = 32;
+
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int markers;
+    private final int rings;
+    private final int faces;
+    private AtomicLong hash;
+
+    private MappedStickers(FileChannel channel, FileLock lock, MappedByteBuffer buffer, int size) {
+        this.channel = channel;
+        this.lock = lock;
+        this.buffer = buffer;
+        this.size = size;
+        this.markers = (int) markersOffset(size);
+        this.rings = markers + Long.BYTES * size;
+        this.faces = rings + MoveGeometry.SEGMENTS * size * size;
+    }
+
+    private static long markersOffset(int size) {
+        return (HEADER_SIZE + 6L * size * size + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+    }
+
+    static long fileLength(int size) {
+        return markersOffset(size) + (long) Long.BYTES * size + (MoveGeometry.SEGMENTS + 2L) * size * size;
+    }
+
+    static MappedStickers open(Path file, int size) throws IOException {
+        long length = fileLength(size);
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("cube of size " + size + " does not fit in one mapping");
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException(file + " is already mapped by another cube");
+            }
+
+            boolean created = channel.size() == 0;
+            if (!created && channel.size() != length) {
+                throw new IOException(file + " does not hold a cube of size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.order(ByteOrder.nativeOrder());
+
+            MappedStickers stickers = new MappedStickers(channel, lock, buffer, size);
+            if (created) {
+                stickers.initialize();
+            }
+            else {
+                if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(FORMAT_OFFSET) != FORMAT
+                        || buffer.getInt(SIZE_OFFSET) != size) {
+                    throw new IOException(file + " does not hold a cube of size " + size);
+                }
+                if ((stickers.getVersion() & 1) != 0) {
+                    stickers.recover();
+                }
+            }
+            return stickers;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void recover() {
+        for (int layer = 0; layer < size; layer++) {
+            long marker = (long) LONGS.getVolatile(buffer, markers + Long.BYTES * layer);
+            if (marker != 0) {
+                copyLayer((int) marker - 1, layer, false);
+                LONGS.setVolatile(buffer, markers + Long.BYTES * layer, 0L);
+            }
+        }
+        LONGS.getAndAdd(buffer, VERSION_OFFSET, 1L);
+        buffer.force();
+    }
+
+    private void saveLayer(int axis, int layer) {
+        copyLayer(axis, layer, true);
+        LONGS.setVolatile(buffer, markers + Long.BYTES * layer, (long) axis + 1);
+    }
+
+    private void releaseLayer(int layer) {
+        LONGS.setRelease(buffer, markers + Long.BYTES * layer, 0L);
+    }
+
+    private void copyLayer(int axis, int layer, boolean save) {
+        int saved = rings + MoveGeometry.SEGMENTS * size * layer;
+        for (int segment = 0; segment < MoveGeometry.SEGMENTS; segment++) {
+            int position = start(axis, layer, segment);
+            int step = step(axis, segment);
+            for (int i = 0; i < size; i++, position += step, saved++) {
+                copy(position, saved, save);
+            }
+        }
+
+        int faceId = MoveGeometry.face(size, axis, layer);
+        if (faceId >= 0) {
+            int faceSize = size * size;
+            int position = HEADER_SIZE + faceId * faceSize;
+            saved = faces + (layer == 0 ? 0 : faceSize);
+            for (int i = 0; i < faceSize; i++) {
+                copy(position + i, saved + i, save);
+            }
+        }
+    }
+
+    private void copy(int position, int saved, boolean save) {
+        if (save) {
+            buffer.put(saved, buffer.get(position));
+        }
+        else {
+            buffer.put(position, buffer.get(saved));
+        }
+    }
+
+    private void initialize() {
+        int faceSize = size * size;
+        for (int sideId = 0; sideId < 6; sideId++) {
+            for (int i = 0; i < faceSize; i++) {
+                buffer.put(HEADER_SIZE + sideId * faceSize + i, (byte) sideId);
+            }
+        }
+        buffer.putInt(FORMAT_OFFSET, FORMAT);
+        buffer.putInt(SIZE_OFFSET, size);
+        LONGS.setRelease(buffer, VERSION_OFFSET, 0L);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.force();
+    }
+
+    long getVersion() {
+        return (long) LONGS.getAcquire(buffer, VERSION_OFFSET);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public void phaseStarted(int threadTypeId) {
+        if (threadTypeId != 0) {
+            LONGS.getAndAdd(buffer, VERSION_OFFSET, 1L);
+        }
+    }
+
+    @Override
+    public void phaseEnded(int threadTypeId) {
+        if (threadTypeId != 0) {
+            LONGS.getAndAdd(buffer, VERSION_OFFSET, 1L);
+        }
+    }
+
+    private int offset(int sideId, int row, int column) {
+        return HEADER_SIZE + (sideId * size + row) * size + column;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    private void rotateFaceClockwise(int sideId) {
+        for (int i = 0; i < size - 1; i++) {
+            for (int j = i; j < size - 1 - i; j++) {
+                int first = offset(sideId, i, j);
+                int second = offset(sideId, size - 1 - j, i);
+                int third = offset(sideId, size - 1 - i, size - 1 - j);
+                int fourth = offset(sideId, j, size - 1 - i);
+
+                byte temp = buffer.get(first);
+                buffer.put(first, buffer.get(second));
+                buffer.put(second, buffer.get(third));
+                buffer.put(third, buffer.get(fourth));
+                buffer.put(fourth, temp);
+            }
+        }
+    }
+
+    private void rotateFaceCounterClockwise(int sideId) {
+        for (int i = 0; i < size - 1; i++) {
+            for (int j = i; j < size - 1 - i; j++) {
+                int first = offset(sideId, i, j);
+                int second = offset(sideId, size - 1 - j, i);
+                int third = offset(sideId, size - 1 - i, size - 1 - j);
+                int fourth = offset(sideId, j, size - 1 - i);
+
+                byte temp = buffer.get(fourth);
+                buffer.put(fourth, buffer.get(third));
+                buffer.put(third, buffer.get(second));
+                buffer.put(second, buffer.get(first));
+                buffer.put(first, temp);
+            }
+        }
+    }
+
+    private void cycle(int first, int firstStep, int second, int secondStep,
+                       int third, int thirdStep, int fourth, int fourthStep, boolean changeDirection) {
+        for (int i = 0; i < size; i++) {
+            byte temp = buffer.get(first);
+            if (!changeDirection) {
+                buffer.put(first, buffer.get(fourth));
+                buffer.put(fourth, buffer.get(third));
+                buffer.put(third, buffer.get(second));
+                buffer.put(second, temp);
+            }
+            else {
+                buffer.put(first, buffer.get(second));
+                buffer.put(second, buffer.get(third));
+                buffer.put(third, buffer.get(fourth));
+                buffer.put(fourth, temp);
+            }
+            first += firstStep;
+            second += secondStep;
+            third += thirdStep;
+            fourth += fourthStep;
+        }
+    }
+
+    @Override
+    public void rotate(int sideId, int layer) {
+        if (hash == null) {
+            rotateUntracked(sideId, layer);
+            return;
+        }
+        long before = StateHash.ofMove(this, sideId, layer);
+        rotateUntracked(sideId, layer);
+        hash.accumulateAndGet(before ^ StateHash.ofMove(this, sideId, layer), StateHash::xor);
+    }
+
+    private void rotateUntracked(int sideId, int layer) {
+        int axis = MoveGeometry.axis(sideId);
+        int realLayer = MoveGeometry.realLayer(size, sideId, layer);
+        boolean changeDirection = MoveGeometry.isReversed(sideId);
+        saveLayer(axis, realLayer);
+
+        int faceId = MoveGeometry.face(size, axis, realLayer);
+        if (faceId >= 0) {
+            if (MoveGeometry.turnsFaceClockwise(realLayer, changeDirection)) {
+                rotateFaceClockwise(faceId);
+            }
+            else {
+                rotateFaceCounterClockwise(faceId);
+            }
+        }
+
+        cycle(start(axis, realLayer, 0), step(axis, 0), start(axis, realLayer, 1), step(axis, 1),
+                start(axis, realLayer, 2), step(axis, 2), start(axis, realLayer, 3), step(axis, 3), changeDirection);
+        releaseLayer(realLayer);
+    }
+
+    private int start(int axis, int layer, int segment) {
+        return offset(MoveGeometry.segmentSide(axis, segment), MoveGeometry.segmentRow(size, axis, layer, segment),
+                MoveGeometry.segmentColumn(size, axis, layer, segment));
+    }
+
+    private int step(int axis, int segment) {
+        return MoveGeometry.segmentRowStep(axis, segment) * size + MoveGeometry.segmentColumnStep(axis, segment);
+    }
+
+    @Override
+    public void trackHash() {
+        hash = new AtomicLong(StateHash.of(this));
+    }
+
+    @Override
+    public long stateHash() {
+        return hash.get();
+    }
+
+    @Override
+    public void load(byte[] colors) {
+        for (int i = 0; i < colors.length; i++) {
+            buffer.put(HEADER_SIZE + i, colors[i]);
+        }
+        if (hash != null) {
+            hash.set(StateHash.of(this));
+        }
+    }
+
+    @Override
+    public void apply(MoveSequence sequence) {
+        if (hash == null) {
+            applyUntracked(sequence);
+            return;
+        }
+        long before = StateHash.ofPositions(this, sequence.getTargets());
+        applyUntracked(sequence);
+        hash.accumulateAndGet(before ^ StateHash.ofPositions(this, sequence.getTargets()), StateHash::xor);
+    }
+
+    private void applyUntracked(MoveSequence sequence) {
+        int[] targets = sequence.getTargets();
+        int[] sources = sequence.getSources();
+        int axis = sequence.getThreadTypeId() - 1;
+        for (int layer : sequence.getRealLayers()) {
+            saveLayer(axis, layer);
+        }
+
+        byte[] values = new byte[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            values[i] = buffer.get(HEADER_SIZE + sources[i]);
+        }
+        for (int i = 0; i < targets.length; i++) {
+            buffer.put(HEADER_SIZE + targets[i], values[i]);
+        }
+        for (int layer : sequence.getRealLayers()) {
+            releaseLayer(layer);
+        }
+    }
+
+    @Override
+    public CubeState snapshot() {
+        byte[] colors = new byte[6 * size * size];
+        buffer.duplicate().position(HEADER_SIZE).get(colors);
+        return Stickers.of(size, colors);
+    }
+
+    @Override
+    public byte get(int sideId, int row, int column) {
+        return buffer.get(offset(sideId, row, column));
+    }
+
+    @Override
+    public void appendTo(StringBuilder result) {
+        int end = HEADER_SIZE + 6 * size * size;
+        for (int i = HEADER_SIZE; i < end; i++) {
+            result.append((char) ('0' + buffer.get(i)));
+        }
+    }
+
+    @Override
+    public void copyDigits(int sideId, int from, byte[] target, int offset, int length) {
+        int start = HEADER_SIZE + sideId * size * size + from;
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = (byte) ('0' + buffer.get(start + i));
+        }
+    }
+
+    @Override
+    public void appendRowTo(StringBuilder result, int sideId, int row) {
+        int start = offset(sideId, row, 0);
+        for (int column = 0; column < size; column++) {
+            result.append((char) ('0' + buffer.get(start + column)));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package concurrentcube;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+class MetricsRecorder {
+    private static final int THREAD_TYPES = 4;
+
+    private final LatencyHistogram[] axisWait = new LatencyHistogram[THREAD_TYPES];
+    private final LongAdder phaseSwitches = new LongAdder();
+    private final LatencyHistogram cohortSizes = new LatencyHistogram();
+    private final AtomicLongArray layerCollisions;
+    private final LatencyHistogram layerWait = new LatencyHistogram();
+    private final LatencyHistogram showStalls = new LatencyHistogram();
+
+    MetricsRecorder(int size) {
+        for (int i = 0; i < THREAD_TYPES; i++) {
+            axisWait[i] = new LatencyHistogram();
+        }
+        layerCollisions = new AtomicLongArray(size);
+    }
+
+    void axisWait(int threadTypeId, int blockingThreadTypeId, long nanos) {
+        axisWait[threadTypeId].record(nanos);
+        if (threadTypeId != 0 && blockingThreadTypeId == 0) {
+            showStalls.record(nanos);
+        }
+    }
+
+    void phaseStarted() {
+        phaseSwitches.increment();
+    }
+
+    void phaseEnded(int cohortSize) {
+        cohortSizes.record(cohortSize);
+    }
+
+    void layerCollision(int layer) {
+        layerCollisions.incrementAndGet(layer);
+    }
+
+    void layerWait(long nanos) {
+        layerWait.record(nanos);
+    }
+
+    CubeMetrics snapshot() {
+        CubeMetrics.Histogram[] axisWaits = new CubeMetrics.Histogram[THREAD_TYPES];
+        for (int i = 0; i < THREAD_TYPES; i++) {
+            axisWaits[i] = axisWait[i].snapshot();
+        }
+        long[] collisions = new long[layerCollisions.length()];
+        for (int i = 0; i < collisions.length; i++) {
+            collisions[i] = layerCollisions.get(i);
+        }
+        return new CubeMetrics(axisWaits, phaseSwitches.sum(), cohortSizes.snapshot(),
+                collisions, layerWait.snapshot(), showStalls.snapshot());
+    }
+}
@@ -0,0 +1,131 @@
+package concurrentcube;
+
+final class MoveGeometry {
+    static final int SEGMENTS = 4;
+
+    private static final int ZERO = 0;
+    private static final int LAST = 1;
+    private static final int LAYER = 2;
+    private static final int MIRRORED = 3;
+
+    private static final Side[] AXES = {Side.FRONT, Side.RIGHT, Side.UP};
+
+    private static final int[][] SIDES = {
+            {Side.UP.getId(), Side.RIGHT.getId(), Side.DOWN.getId(), Side.LEFT.getId()},
+            {Side.UP.getId(), Side.BACK.getId(), Side.DOWN.getId(), Side.FRONT.getId()},
+            {Side.RIGHT.getId(), Side.FRONT.getId(), Side.LEFT.getId(), Side.BACK.getId()}
+    };
+    private static final int[][] ROWS = {
+            {MIRRORED, ZERO, LAYER, LAST},
+            {ZERO, LAST, ZERO, ZERO},
+            {LAYER, LAYER, LAYER, LAYER}
+    };
+    private static final int[][] COLUMNS = {
+            {ZERO, LAYER, LAST, MIRRORED},
+            {MIRRORED, LAYER, MIRRORED, MIRRORED},
+            {ZERO, ZERO, ZERO, ZERO}
+    };
+    private static final int[][] ROW_STEPS = {
+            {0, 1, 0, -1},
+            {1, -1, 1, 1},
+            {0, 0, 0, 0}
+    };
+    private static final int[][] COLUMN_STEPS = {
+            {1, 0, -1, 0},
+            {0, 0, 0, 0},
+            {1, 1, 1, 1}
+    };
+
+    private MoveGeometry() {
+    }
+
+    static int axis(int sideId) {
+        return Side.getThreadTypeId(sideId) - 1;
+    }
+
+    static boolean isReversed(int sideId) {
+        return !Side.getSideOfId(sideId).isDefault();
+    }
+
+    static int realLayer(int size, int sideId, int layer) {
+        return isReversed(sideId) ? size - 1 - layer : layer;
+    }
+
+    static int face(int size, int axis, int realLayer) {
+        if (realLayer == 0) {
+            return AXES[axis].getId();
+        }
+        if (realLayer == size - 1) {
+            return AXES[axis].getOpposite().getId();
+        }
+        return -1;
+    }
+
+    static boolean turnsFaceClockwise(int realLayer, boolean reversed) {
+        return (realLayer == 0) != reversed;
+    }
+
+    static int segmentSide(int axis, int segment) {
+        return SIDES[axis][segment];
+    }
+
+    static int segmentRow(int size, int axis, int realLayer, int segment) {
+        return coordinate(size, realLayer, ROWS[axis][segment]);
+    }
+
+    static int segmentColumn(int size, int axis, int realLayer, int segment) {
+        return coordinate(size, realLayer, COLUMNS[axis][segment]);
+    }
+
+    static int segmentRowStep(int axis, int segment) {
+        return ROW_STEPS[axis][segment];
+    }
+
+    static int segmentColumnStep(int axis, int segment) {
+        return COLUMN_STEPS[axis][segment];
+    }
+
+    static int receiver(int segment, boolean reversed) {
+        return (segment + (reversed ? SEGMENTS - 1 : 1)) % SEGMENTS;
+    }
+
+    static int touched(int size, int layer) {
+        return SEGMENTS * size + (layer == 0 || layer == size - 1 ? size * size : 0);
+    }
+
+    static int positions(int size, int sideId, int layer, int[] positions, int filled) {
+        int axis = axis(sideId);
+        int realLayer = realLayer(size, sideId, layer);
+        int faceId = face(size, axis, realLayer);
+        if (faceId >= 0) {
+            for (int i = 0, position = faceId * size * size; i < size * size; i++) {
+                positions[filled++] = position++;
+            }
+        }
+
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            int segmentSide = segmentSide(axis, segment);
+            int row = segmentRow(size, axis, realLayer, segment);
+            int column = segmentColumn(size, axis, realLayer, segment);
+            for (int i = 0; i < size; i++) {
+                positions[filled++] = (segmentSide * size + row) * size + column;
+                row += segmentRowStep(axis, segment);
+                column += segmentColumnStep(axis, segment);
+            }
+        }
+        return filled;
+    }
+
+    private static int coordinate(int size, int realLayer, int kind) {
+        switch (kind) {
+            case LAST:
+                return size - 1;
+            case LAYER:
+                return realLayer;
+            case MIRRORED:
+                return size - 1 - realLayer;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package concurrentcube;
+
+import java.util.Arrays;
+
+public final class MoveSequence {
+    private final int size;
+    private final int[] sides;
+    private final int[] layers;
+    private final int threadTypeId;
+    private final int[] realLayers;
+    private final int[] targets;
+    private final int[] sources;
+
+    private MoveSequence(int size, int[] sides, int[] layers, int threadTypeId, int[] realLayers,
+                         int[] targets, int[] sources) {
+        this.size = size;
+        this.sides = sides;
+        this.layers = layers;
+        this.threadTypeId = threadTypeId;
+        this.realLayers = realLayers;
+        this.targets = targets;
+        this.sources = sources;
+    }
+
+    public static MoveSequence compile(int size, int[] sides, int[] layers) {
+        if (sides.length != layers.length) {
+            throw new IllegalArgumentException("sides and layers must have the same length");
+        }
+        for (int i = 0; i < sides.length; i++) {
+            if (sides[i] < 0 || sides[i] >= 6 || layers[i] < 0 || layers[i] >= size) {
+                throw new IllegalArgumentException("invalid move " + sides[i] + " " + layers[i]);
+            }
+        }
+
+        int faceSize = size * size;
+        int stickers = 6 * faceSize;
+        int[] source = new int[stickers];
+        for (int shift = 0; shift < 32 && (stickers - 1) >>> shift != 0; shift += 8) {
+            Stickers traced = Stickers.labelled(size, shift);
+            for (int i = 0; i < sides.length; i++) {
+                traced.rotate(sides[i], layers[i]);
+            }
+            for (int position = 0; position < stickers; position++) {
+                int face = position / faceSize;
+                int index = position % faceSize;
+                source[position] |= (traced.get(face, index / size, index % size) & 0xFF) << shift;
+            }
+        }
+
+        int moved = 0;
+        for (int position = 0; position < stickers; position++) {
+            if (source[position] != position) {
+                moved++;
+            }
+        }
+        int[] targets = new int[moved];
+        int[] sources = new int[moved];
+        moved = 0;
+        for (int position = 0; position < stickers; position++) {
+            if (source[position] != position) {
+                targets[moved] = position;
+                sources[moved] = source[position];
+                moved++;
+            }
+        }
+
+        int threadTypeId = sides.length == 0 ? 1 : Side.getThreadTypeId(sides[0]);
+        boolean singleAxis = true;
+        boolean[] used = new boolean[size];
+        for (int i = 0; i < sides.length; i++) {
+            singleAxis &= Side.getThreadTypeId(sides[i]) == threadTypeId;
+            used[Side.getSideOfId(sides[i]).isDefault() ? layers[i] : size - 1 - layers[i]] = true;
+        }
+        int[] realLayers = new int[size];
+        int count = 0;
+        for (int layer = 0; layer < size; layer++) {
+            if (!singleAxis || used[layer]) {
+                realLayers[count++] = layer;
+            }
+        }
+
+        return new MoveSequence(size, sides.clone(), layers.clone(), threadTypeId,
+                Arrays.copyOf(realLayers, count), targets, sources);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int length() {
+        return sides.length;
+    }
+
+    int getSide(int move) {
+        return sides[move];
+    }
+
+    int getLayer(int move) {
+        return layers[move];
+    }
+
+    int getThreadTypeId() {
+        return threadTypeId;
+    }
+
+    int[] getRealLayers() {
+        return realLayers;
+    }
+
+    int[] getTargets() {
+        return targets;
+    }
+
+    int[] getSources() {
+        return sources;
+    }
+}
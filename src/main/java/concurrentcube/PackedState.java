@@ -0,0 +1,42 @@
+package concurrentcube;
+
+public final class PackedState {
+    public static final int BITS_PER_STICKER = 3;
+    public static final int STICKERS_PER_WORD = 21;
+
+    private PackedState() {
+    }
+
+    public static int stickers(int size) {
+        return Math.toIntExact(6L * size * size);
+    }
+
+    public static int words(int size) {
+        return Math.toIntExact((6L * size * size + STICKERS_PER_WORD - 1) / STICKERS_PER_WORD);
+    }
+
+    public static int color(long[] packed, int index) {
+        long word = packed[index / STICKERS_PER_WORD];
+        return (int) (word >>> (BITS_PER_STICKER * (index % STICKERS_PER_WORD))) & 7;
+    }
+
+    public static byte[] decode(long[] packed, int size) {
+        if (packed.length < words(size)) {
+            throw new IllegalArgumentException("packed state of size " + size + " needs " + words(size) + " words");
+        }
+        byte[] colors = new byte[stickers(size)];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = (byte) color(packed, i);
+        }
+        return colors;
+    }
+
+    public static String toShowString(long[] packed, int size) {
+        byte[] colors = decode(packed, size);
+        StringBuilder result = new StringBuilder(colors.length);
+        for (byte color : colors) {
+            result.append((char) ('0' + color));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,191 @@
+package concurrentcube;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+class PermutationStickers implements CubeState {
+    static final int MAX_SIZE = 5;
+
+    private static final byte[][][][] tables = new byte[MAX_SIZE + 1][][][];
+
+    private final byte[] stickers;
+    private final byte[][][] moves;
+    private final int size;
+    private AtomicLong hash;
+
+    PermutationStickers(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("permutation tables are available for sizes 1 to " + MAX_SIZE);
+        }
+        this.size = size;
+        this.moves = tablesFor(size);
+
+        int faceSize = size * size;
+        stickers = new byte[6 * faceSize];
+        for (int i = 0; i < stickers.length; i++) {
+            stickers[i] = (byte) (i / faceSize);
+        }
+    }
+
+    private PermutationStickers(PermutationStickers other) {
+        this.size = other.size;
+        this.moves = other.moves;
+        this.stickers = other.stickers.clone();
+    }
+
+    private static synchronized byte[][][] tablesFor(int size) {
+        if (tables[size] == null) {
+            tables[size] = compileTables(size);
+        }
+        return tables[size];
+    }
+
+    private static byte[][][] compileTables(int size) {
+        int faceSize = size * size;
+        byte[][][] compiled = new byte[6][size][];
+        for (int sideId = 0; sideId < 6; sideId++) {
+            for (int layer = 0; layer < size; layer++) {
+                Stickers traced = Stickers.labelled(size);
+                traced.rotate(sideId, layer);
+
+                int[] source = new int[6 * faceSize];
+                for (int position = 0; position < source.length; position++) {
+                    int face = position / faceSize;
+                    int index = position % faceSize;
+                    source[position] = traced.get(face, index / size, index % size) & 0xFF;
+                }
+                compiled[sideId][layer] = cycles(source);
+            }
+        }
+        return compiled;
+    }
+
+    private static byte[] cycles(int[] source) {
+        boolean[] visited = new boolean[source.length];
+        byte[] result = new byte[source.length];
+        int length = 0;
+        for (int start = 0; start < source.length; start++) {
+            if (visited[start] || source[start] == start) {
+                continue;
+            }
+            int position = start;
+            for (int i = 0; i < 4; i++) {
+                visited[position] = true;
+                result[length++] = (byte) position;
+                position = source[position];
+            }
+            if (position != start) {
+                throw new IllegalStateException("quarter turn is not a product of 4-cycles");
+            }
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public void rotate(int sideId, int layer) {
+        if (hash == null) {
+            rotateUntracked(sideId, layer);
+            return;
+        }
+        long before = StateHash.ofMove(this, sideId, layer);
+        rotateUntracked(sideId, layer);
+        hash.accumulateAndGet(before ^ StateHash.ofMove(this, sideId, layer), StateHash::xor);
+    }
+
+    private void rotateUntracked(int sideId, int layer) {
+        byte[] cycles = moves[sideId][layer];
+        byte[] stickers = this.stickers;
+        for (int i = 0; i < cycles.length; i += 4) {
+            int first = cycles[i] & 0xFF;
+            int second = cycles[i + 1] & 0xFF;
+            int third = cycles[i + 2] & 0xFF;
+            int fourth = cycles[i + 3] & 0xFF;
+
+            byte temp = stickers[first];
+            stickers[first] = stickers[second];
+            stickers[second] = stickers[third];
+            stickers[third] = stickers[fourth];
+            stickers[fourth] = temp;
+        }
+    }
+
+    @Override
+    public void trackHash() {
+        hash = new AtomicLong(StateHash.of(this));
+    }
+
+    @Override
+    public long stateHash() {
+        return hash.get();
+    }
+
+    @Override
+    public void load(byte[] colors) {
+        System.arraycopy(colors, 0, stickers, 0, stickers.length);
+        if (hash != null) {
+            hash.set(StateHash.of(this));
+        }
+    }
+
+    @Override
+    public void apply(MoveSequence sequence) {
+        if (hash == null) {
+            applyUntracked(sequence);
+            return;
+        }
+        long before = StateHash.ofPositions(this, sequence.getTargets());
+        applyUntracked(sequence);
+        hash.accumulateAndGet(before ^ StateHash.ofPositions(this, sequence.getTargets()), StateHash::xor);
+    }
+
+    private void applyUntracked(MoveSequence sequence) {
+        int[] targets = sequence.getTargets();
+        int[] sources = sequence.getSources();
+
+        byte[] values = new byte[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            values[i] = stickers[sources[i]];
+        }
+        for (int i = 0; i < targets.length; i++) {
+            stickers[targets[i]] = values[i];
+        }
+    }
+
+    @Override
+    public CubeState snapshot() {
+        return new PermutationStickers(this);
+    }
+
+    @Override
+    public byte get(int sideId, int row, int column) {
+        return stickers[(sideId * size + row) * size + column];
+    }
+
+    @Override
+    public void appendTo(StringBuilder result) {
+        for (byte color : stickers) {
+            result.append((char) ('0' + color));
+        }
+    }
+
+    @Override
+    public void copyDigits(int sideId, int from, byte[] target, int offset, int length) {
+        int start = sideId * size * size + from;
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = (byte) ('0' + stickers[start + i]);
+        }
+    }
+
+    @Override
+    public void appendRowTo(StringBuilder result, int sideId, int row) {
+        int start = (sideId * size + row) * size;
+        for (int column = 0; column < size; column++) {
+            result.append((char) ('0' + stickers[start + column]));
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package concurrentcube;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+class PhaseBarrierScheduler extends AxisScheduler {
+    private static final int THREAD_TYPES = 4;
+
+    private int currentThreadType = -1;
+    private int howManyThreadsActive = 0;
+    private int howManyToExit = 0;
+    private int howManyWaiting = 0;
+    private int cohortSize = 0;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition waiting = lock.newCondition();
+    private final Condition entrance = lock.newCondition();
+    private final Condition exit = lock.newCondition();
+
+    private final List<ArrayDeque<AsyncWaiter>> asyncQueues;
+    private int howManyWaitingAsync = 0;
+    private long nextArrival = 0;
+
+    private static final class AsyncWaiter {
+        private final long arrival;
+        private final Runnable onAdmitted;
+
+        private AsyncWaiter(long arrival, Runnable onAdmitted) {
+            this.arrival = arrival;
+            this.onAdmitted = onAdmitted;
+        }
+    }
+
+    PhaseBarrierScheduler() {
+        asyncQueues = new ArrayList<>(THREAD_TYPES);
+        for (int i = 0; i < THREAD_TYPES; i++) {
+            asyncQueues.add(new ArrayDeque<>());
+        }
+    }
+
+    @Override
+    void beginningProtocol(int threadTypeId) throws InterruptedException {
+        long start = metrics != null ? System.nanoTime() : 0;
+        Runnable[] callbacks = null;
+        lock.lock();
+        try {
+            int blockingThreadType = currentThreadType;
+            while (currentThreadType == -1 && howManyWaiting > 0) {
+                waiting.await();
+            }
+            if (!(currentThreadType == threadTypeId || currentThreadType == -1)) {
+                howManyWaiting++;
+                while (!(currentThreadType == threadTypeId || currentThreadType == -1)) {
+                    try {
+                        entrance.await();
+                    } catch (InterruptedException e) {
+                        howManyWaiting--;
+                        if (howManyWaiting == 0) {
+                            waiting.signalAll();
+                        }
+                        admitAsync(false);
+                        callbacks = takeAdmittedCallbacks();
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+                howManyWaiting--;
+                howManyThreadsActive++;
+                if (currentThreadType == -1) {
+                    startPhase(threadTypeId);
+                    waiting.signalAll();
+                    admitAsync(true);
+                    callbacks = takeAdmittedCallbacks();
+                }
+                cohortSize++;
+            }
+            else {
+                if (currentThreadType == -1) {
+                    startPhase(threadTypeId);
+                }
+                howManyThreadsActive++;
+                cohortSize++;
+            }
+
+            if (metrics != null) {
+                metrics.axisWait(threadTypeId, blockingThreadType, System.nanoTime() - start);
+            }
+        }
+        finally {
+            lock.unlock();
+            runAdmittedCallbacks(callbacks);
+        }
+    }
+
+    @Override
+    void endingProtocol() {
+        Runnable[] callbacks = null;
+        lock.lock();
+        try {
+            howManyThreadsActive--;
+            if (howManyThreadsActive > 0) {
+                howManyToExit++;
+                while (howManyThreadsActive > 0) {
+                    exit.awaitUninterruptibly();
+                }
+                howManyToExit--;
+            }
+            else {
+                endPhase();
+                exit.signalAll();
+            }
+
+            if (howManyToExit == 0) {
+                entrance.signalAll();
+                admitAsync(false);
+                callbacks = takeAdmittedCallbacks();
+            }
+        }
+        finally {
+            lock.unlock();
+            runAdmittedCallbacks(callbacks);
+        }
+    }
+
+    @Override
+    void abortingProtocol() {
+        Runnable[] callbacks = null;
+        lock.lock();
+        howManyThreadsActive--;
+        if (howManyThreadsActive == 0) {
+            endPhase();
+            exit.signalAll();
+        }
+        if (howManyToExit == 0) {
+            entrance.signalAll();
+            admitAsync(false);
+            callbacks = takeAdmittedCallbacks();
+        }
+        lock.unlock();
+        runAdmittedCallbacks(callbacks);
+    }
+
+    @Override
+    void beginningProtocolAsync(int threadTypeId, Runnable onAdmitted) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        Runnable admitted;
+        lock.lock();
+        try {
+            admitted = recordingAxisWait(threadTypeId, currentThreadType, start, onAdmitted);
+            boolean canEnter = howManyWaiting == 0 && howManyToExit == 0
+                    && (currentThreadType == threadTypeId || currentThreadType == -1);
+            if (!canEnter) {
+                asyncQueues.get(threadTypeId).addLast(new AsyncWaiter(nextArrival++, admitted));
+                howManyWaiting++;
+                howManyWaitingAsync++;
+                return;
+            }
+            if (currentThreadType == -1) {
+                startPhase(threadTypeId);
+            }
+            howManyThreadsActive++;
+            cohortSize++;
+        }
+        finally {
+            lock.unlock();
+        }
+        admitted.run();
+    }
+
+    @Override
+    void endingProtocolAsync() {
+        abortingProtocol();
+    }
+
+    private void admitAsync(boolean phaseOpened) {
+        if (howManyWaitingAsync == 0) {
+            return;
+        }
+
+        if (currentThreadType == -1) {
+            if (howManyWaiting > howManyWaitingAsync) {
+                return;
+            }
+
+            int oldest = -1;
+            for (int i = 0; i < THREAD_TYPES; i++) {
+                AsyncWaiter head = asyncQueues.get(i).peekFirst();
+                if (head != null && (oldest == -1 || head.arrival < asyncQueues.get(oldest).peekFirst().arrival)) {
+                    oldest = i;
+                }
+            }
+            startPhase(oldest);
+        }
+        else if (!phaseOpened
+                && (howManyToExit > 0 || howManyWaiting > asyncQueues.get(currentThreadType).size())) {
+            return;
+        }
+
+        ArrayDeque<AsyncWaiter> queue = asyncQueues.get(currentThreadType);
+        while (!queue.isEmpty()) {
+            addAdmittedCallback(queue.pollFirst().onAdmitted);
+            howManyWaiting--;
+            howManyWaitingAsync--;
+            howManyThreadsActive++;
+            cohortSize++;
+        }
+
+        if (howManyWaiting == 0) {
+            waiting.signalAll();
+        }
+    }
+
+    private void startPhase(int threadTypeId) {
+        currentThreadType = threadTypeId;
+        cohortSize = 0;
+        phaseStarted(threadTypeId);
+    }
+
+    private void endPhase() {
+        phaseEnded(currentThreadType, cohortSize);
+        currentThreadType = -1;
+    }
+}
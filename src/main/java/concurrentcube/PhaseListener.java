@@ -0,0 +1,7 @@
+package concurrentcube;
+
+interface PhaseListener {
+    void phaseStarted(int threadTypeId);
+
+    void phaseEnded(int threadTypeId);
+}
@@ -0,0 +1,11 @@
+package concurrentcube;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("concurrentcube.Rotation")
+@Label("Rotation")
+@Description("Execution of a rotation including the before and after callbacks")
+class RotationEvent extends CubeEvent {
+}
@@ -0,0 +1,365 @@
+package concurrentcube;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+class RotationJournal implements PhaseListener {
+    static final int RECORD_SIZE = 16;
+    private static final int MAGIC = 0x43554A4C;
+    private static final int FORMAT = 1;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int size;
+    private final long segmentSize;
+    private final Executor executor;
+    private final CRC32 checksum = new CRC32();
+
+    private final ExecutorService committer;
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
+    private final Object segmentLock = new Object();
+
+    private FileChannel segment;
+    private long segmentLength;
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private ByteBuffer spare = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private long nextSequence;
+    private volatile long durableSequence;
+    private volatile IOException failure;
+    private final ArrayList<DurableCallback> callbacks = new ArrayList<>();
+
+    private static final class DurableCallback {
+        private final long sequence;
+        private final Runnable callback;
+
+        private DurableCallback(long sequence, Runnable callback) {
+            this.sequence = sequence;
+            this.callback = callback;
+        }
+    }
+
+    private RotationJournal(Path directory, int size, long segmentSize, Executor executor, long lastSequence) {
+        this.directory = directory;
+        this.size = size;
+        this.segmentSize = segmentSize;
+        this.executor = executor;
+        this.nextSequence = lastSequence + 1;
+        this.durableSequence = lastSequence;
+        this.committer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cube-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static RotationJournal open(Path directory, long segmentSize, Executor executor,
+                                CubeState state, long fromSequence) throws IOException {
+        Files.createDirectories(directory);
+
+        long lastSequence = fromSequence;
+        ArrayList<Path> segments = segments(directory);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        CRC32 checksum = new CRC32();
+        for (int i = 0; i < segments.size(); i++) {
+            Path file = segments.get(i);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (!readFully(channel, record, 0) || !isValid(record, checksum)) {
+                    if (i + 1 < segments.size()) {
+                        throw new IOException("journal segment " + file + " has no valid header");
+                    }
+                    channel.truncate(0);
+                    break;
+                }
+                if (record.getInt(0) != MAGIC || record.getInt(4) != FORMAT) {
+                    throw new IOException(file + " is not a rotation journal segment");
+                }
+                if (record.getInt(8) != state.getSize()) {
+                    throw new IOException("journal was written for a cube of size " + record.getInt(8)
+                            + ", not " + state.getSize());
+                }
+
+                long position = RECORD_SIZE;
+                while (true) {
+                    if (!readFully(channel, record, position) || !isValid(record, checksum)) {
+                        break;
+                    }
+                    long sequence = record.getLong(0);
+                    if (sequence > lastSequence) {
+                        if (sequence != lastSequence + 1) {
+                            throw new IOException("journal is missing records before sequence " + sequence);
+                        }
+                        state.rotate(record.getShort(12), record.getInt(8));
+                        lastSequence = sequence;
+                    }
+                    position += RECORD_SIZE;
+                }
+                if (position < channel.size()) {
+                    channel.truncate(position);
+                    for (int j = i + 1; j < segments.size(); j++) {
+                        Files.delete(segments.get(j));
+                    }
+                    break;
+                }
+            }
+        }
+
+        RotationJournal journal = new RotationJournal(directory, state.getSize(), segmentSize, executor,
+                lastSequence);
+        journal.openSegment(lastSequence + 1);
+        return journal;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static ArrayList<Path> segments(Path directory) throws IOException {
+        ArrayList<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static boolean isValid(ByteBuffer record, CRC32 checksum) {
+        checksum.reset();
+        checksum.update(record.array(), 0, RECORD_SIZE - 2);
+        return record.getShort(RECORD_SIZE - 2) == (short) checksum.getValue();
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        ArrayList<Path> segments = segments(directory);
+        Path file = segments.isEmpty() || Files.size(segments.get(segments.size() - 1)) >= segmentSize
+                ? directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX))
+                : segments.get(segments.size() - 1);
+        segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentLength = segment.size();
+        segment.position(segmentLength);
+        if (segmentLength == 0) {
+            writeHeader();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT);
+        header.putInt(size);
+        checksum.reset();
+        checksum.update(header.array(), 0, RECORD_SIZE - 2);
+        header.putShort(RECORD_SIZE - 2, (short) checksum.getValue());
+        header.clear();
+        while (header.hasRemaining()) {
+            segmentLength += segment.write(header);
+        }
+    }
+
+    synchronized long append(int side, int layer) {
+        if (failure != null) {
+            return nextSequence++;
+        }
+        if (pending.remaining() < RECORD_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+
+        long sequence = nextSequence++;
+        int start = pending.position();
+        pending.putLong(sequence);
+        pending.putInt(layer);
+        pending.putShort((short) side);
+        checksum.reset();
+        checksum.update(pending.array(), start, RECORD_SIZE - 2);
+        pending.putShort((short) checksum.getValue());
+        return sequence;
+    }
+
+    @Override
+    public void phaseStarted(int threadTypeId) {
+    }
+
+    @Override
+    public void phaseEnded(int threadTypeId) {
+        if (threadTypeId != 0 && commitScheduled.compareAndSet(false, true)) {
+            try {
+                committer.execute(this::commit);
+            } catch (RejectedExecutionException e) {
+                commitScheduled.set(false);
+            }
+        }
+    }
+
+    private void commit() {
+        commitScheduled.set(false);
+        ByteBuffer batch;
+        long last;
+        synchronized (this) {
+            if (pending.position() == 0 || failure != null) {
+                return;
+            }
+            batch = pending;
+            pending = spare.capacity() >= batch.capacity() ? spare : ByteBuffer.allocate(batch.capacity());
+            spare = null;
+            last = nextSequence - 1;
+        }
+
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                segmentLength += segment.write(batch);
+            }
+            segment.force(false);
+
+            if (segmentLength >= segmentSize) {
+                synchronized (segmentLock) {
+                    segment.close();
+                    openSegment(last + 1);
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        batch.clear();
+
+        ArrayList<Runnable> ready;
+        synchronized (this) {
+            spare = batch;
+            if (error != null) {
+                failure = error;
+                pending.clear();
+            }
+            else {
+                durableSequence = last;
+            }
+            notifyAll();
+            ready = takeDurableCallbacks();
+        }
+        runDurableCallbacks(ready);
+    }
+
+    private ArrayList<Runnable> takeDurableCallbacks() {
+        ArrayList<Runnable> ready = new ArrayList<>();
+        for (int i = callbacks.size() - 1; i >= 0; i--) {
+            DurableCallback durable = callbacks.get(i);
+            if (failure == null && durable.sequence > durableSequence) {
+                continue;
+            }
+            callbacks.remove(i);
+            ready.add(durable.callback);
+        }
+        return ready;
+    }
+
+    private void runDurableCallbacks(ArrayList<Runnable> ready) {
+        for (Runnable callback : ready) {
+            try {
+                executor.execute(callback);
+            } catch (RejectedExecutionException e) {
+                callback.run();
+            }
+        }
+    }
+
+    void awaitDurable(long sequence) {
+        if (durableSequence >= sequence && failure == null) {
+            return;
+        }
+
+        boolean interrupted = false;
+        synchronized (this) {
+            while (durableSequence < sequence && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    void whenDurable(long sequence, Runnable callback) {
+        synchronized (this) {
+            if (durableSequence < sequence && failure == null) {
+                callbacks.add(new DurableCallback(sequence, callback));
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    synchronized void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    void deleteSegmentsBefore(long sequence) throws IOException {
+        synchronized (segmentLock) {
+            ArrayList<Path> segments = segments(directory);
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (firstSequenceOf(segments.get(i + 1)) - 1 > sequence) {
+                    break;
+                }
+                Files.delete(segments.get(i));
+            }
+        }
+    }
+
+    synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    void close() throws IOException {
+        committer.shutdown();
+        try {
+            committer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        commit();
+        synchronized (segmentLock) {
+            segment.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
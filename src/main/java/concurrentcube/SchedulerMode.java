@@ -0,0 +1,6 @@
+package concurrentcube;
+
+public enum SchedulerMode {
+    PHASE_BARRIER,
+    EARLY_EXIT
+}
@@ -0,0 +1,11 @@
+package concurrentcube;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("concurrentcube.Show")
+@Label("Show")
+@Description("Formatting of the cube state including the before and after callbacks")
+class ShowEvent extends CubeEvent {
+}
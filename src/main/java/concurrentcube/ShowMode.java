@@ -0,0 +1,6 @@
+package concurrentcube;
+
+public enum ShowMode {
+    EXCLUSIVE,
+    SNAPSHOT
+}
@@ -1,7 +1,5 @@
 package concurrentcube;
 
-import java.util.Arrays;
-
 public enum Side {
     UP(0),
     LEFT(1),
@@ -10,7 +8,7 @@ public enum Side {
     BACK(4),
     DOWN(5);
 
-    private static final Side[] defaultSides = new Side[]{FRONT, RIGHT, UP};
+    private static final Side[] sides = values();
     private final int id;
 
     Side(int id) {
@@ -40,16 +38,14 @@ public enum Side {
     }
 
     public static Side getSideOfId(int id) {
-        for (Side side : Side.values()) {
-            if (side.id == id) {
-                return side;
-            }
+        if (id >= 0 && id < sides.length) {
+            return sides[id];
         }
         return Side.UP;
     }
 
     public boolean isDefault() {
-        return Arrays.asList(defaultSides).contains(this);
+        return this == FRONT || this == RIGHT || this == UP;
     }
 
     public Side getDefault() {
@@ -0,0 +1,86 @@
+package concurrentcube;
+
+public final class StateHash {
+    private StateHash() {
+    }
+
+    static long key(int sticker, int color) {
+        long z = (((long) sticker << 3) | color) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static long xor(long left, long right) {
+        return left ^ right;
+    }
+
+    public static long of(int size, CharSequence shown) {
+        if (shown.length() != 6 * size * size) {
+            throw new IllegalArgumentException("state of size " + size + " has " + 6 * size * size + " stickers");
+        }
+        long hash = 0;
+        for (int i = 0; i < shown.length(); i++) {
+            hash ^= key(i, shown.charAt(i) - '0');
+        }
+        return hash;
+    }
+
+    private static long ofStickers(CubeState state, int sideId, int row, int column, int rowStep, int columnStep) {
+        int size = state.getSize();
+        long hash = 0;
+        for (int i = 0; i < size; i++) {
+            hash ^= key((sideId * size + row) * size + column, state.get(sideId, row, column));
+            row += rowStep;
+            column += columnStep;
+        }
+        return hash;
+    }
+
+    static long ofMove(CubeState state, int sideId, int layer) {
+        int size = state.getSize();
+        int axis = MoveGeometry.axis(sideId);
+        int realLayer = MoveGeometry.realLayer(size, sideId, layer);
+
+        long hash = 0;
+        int faceId = MoveGeometry.face(size, axis, realLayer);
+        if (faceId >= 0) {
+            for (int row = 0; row < size; row++) {
+                hash ^= ofStickers(state, faceId, row, 0, 0, 1);
+            }
+        }
+
+        for (int segment = 0; segment < MoveGeometry.SEGMENTS; segment++) {
+            hash ^= ofStickers(state, MoveGeometry.segmentSide(axis, segment),
+                    MoveGeometry.segmentRow(size, axis, realLayer, segment),
+                    MoveGeometry.segmentColumn(size, axis, realLayer, segment),
+                    MoveGeometry.segmentRowStep(axis, segment), MoveGeometry.segmentColumnStep(axis, segment));
+        }
+        return hash;
+    }
+
+    static long ofPositions(CubeState state, int[] positions) {
+        int size = state.getSize();
+        int faceSize = size * size;
+        long hash = 0;
+        for (int position : positions) {
+            int index = position % faceSize;
+            hash ^= key(position, state.get(position / faceSize, index / size, index % size));
+        }
+        return hash;
+    }
+
+    static long of(CubeState state) {
+        int size = state.getSize();
+        long hash = 0;
+        int sticker = 0;
+        for (int sideId = 0; sideId < 6; sideId++) {
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    hash ^= key(sticker++, state.get(sideId, row, column));
+                }
+            }
+        }
+        return hash;
+    }
+}
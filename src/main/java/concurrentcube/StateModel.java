@@ -0,0 +1,7 @@
+package concurrentcube;
+
+public enum StateModel {
+    STICKERS,
+    PERMUTATION_TABLES,
+    CUBIES
+}
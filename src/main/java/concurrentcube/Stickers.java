@@ -0,0 +1,342 @@
+package concurrentcube;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class Stickers implements CubeState {
+    private final byte[][] faces;
+    private final int[] orientations = new int[6];
+    private final int size;
+    private AtomicLongArray faceHashes;
+
+    Stickers(int size) {
+        this.size = size;
+
+        faces = new byte[6][size * size];
+        setDefaultColors();
+    }
+
+    private Stickers(Stickers other) {
+        this.size = other.size;
+
+        faces = new byte[6][];
+        for (int i = 0; i < faces.length; i++) {
+            faces[i] = other.faces[i].clone();
+            orientations[i] = other.orientations[i];
+        }
+    }
+
+    static Stickers of(int size, byte[] colors) {
+        Stickers stickers = new Stickers(size);
+        int faceSize = size * size;
+        for (int sideId = 0; sideId < 6; sideId++) {
+            System.arraycopy(colors, sideId * faceSize, stickers.faces[sideId], 0, faceSize);
+        }
+        return stickers;
+    }
+
+    static Stickers labelled(int size) {
+        return labelled(size, 0);
+    }
+
+    static Stickers labelled(int size, int shift) {
+        Stickers labelled = new Stickers(size);
+        int faceSize = size * size;
+        for (int sideId = 0; sideId < 6; sideId++) {
+            for (int i = 0; i < faceSize; i++) {
+                labelled.faces[sideId][i] = (byte) ((sideId * faceSize + i) >>> shift);
+            }
+        }
+        return labelled;
+    }
+
+    @Override
+    public Stickers snapshot() {
+        return new Stickers(this);
+    }
+
+    private void setDefaultColors() {
+        for (Side side : Side.values()) {
+            byte[] face = faces[side.getId()];
+            for (int i = 0; i < face.length; i++) {
+                face[i] = (byte) side.getId();
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    private int index(int sideId, int row, int column) {
+        switch (orientations[sideId]) {
+            case 1:
+                return (size - 1 - column) * size + row;
+            case 2:
+                return (size - 1 - row) * size + size - 1 - column;
+            case 3:
+                return column * size + size - 1 - row;
+            default:
+                return row * size + column;
+        }
+    }
+
+    private int step(int sideId, int row, int column, int rowStep, int columnStep) {
+        if (size == 1) {
+            return 0;
+        }
+        return index(sideId, row + rowStep, column + columnStep) - index(sideId, row, column);
+    }
+
+    private void rotateSideArrayClockwise(int sideId) {
+        orientations[sideId] = (orientations[sideId] + 1) & 3;
+    }
+
+    private void rotateSideArrayCounterClockwise(int sideId) {
+        orientations[sideId] = (orientations[sideId] + 3) & 3;
+    }
+
+    private void rotateSideArray(int faceId, boolean clockwise) {
+        if (clockwise) {
+            rotateSideArrayClockwise(faceId);
+        }
+        else {
+            rotateSideArrayCounterClockwise(faceId);
+        }
+    }
+
+    private int start(int axis, int layer, int segment) {
+        return index(MoveGeometry.segmentSide(axis, segment), MoveGeometry.segmentRow(size, axis, layer, segment),
+                MoveGeometry.segmentColumn(size, axis, layer, segment));
+    }
+
+    private int step(int axis, int layer, int segment) {
+        return step(MoveGeometry.segmentSide(axis, segment), MoveGeometry.segmentRow(size, axis, layer, segment),
+                MoveGeometry.segmentColumn(size, axis, layer, segment),
+                MoveGeometry.segmentRowStep(axis, segment), MoveGeometry.segmentColumnStep(axis, segment));
+    }
+
+    private void rotateNeighbours(int axis, int layer, boolean changeDirection) {
+        cycle(MoveGeometry.segmentSide(axis, 0), start(axis, layer, 0), step(axis, layer, 0),
+                MoveGeometry.segmentSide(axis, 1), start(axis, layer, 1), step(axis, layer, 1),
+                MoveGeometry.segmentSide(axis, 2), start(axis, layer, 2), step(axis, layer, 2),
+                MoveGeometry.segmentSide(axis, 3), start(axis, layer, 3), step(axis, layer, 3),
+                changeDirection);
+    }
+
+    private void cycle(int firstId, int first, int firstStep, int secondId, int second, int secondStep,
+                       int thirdId, int third, int thirdStep, int fourthId, int fourth, int fourthStep,
+                       boolean changeDirection) {
+        if (faceHashes != null) {
+            hashSegment(firstId, first, firstStep);
+            hashSegment(secondId, second, secondStep);
+            hashSegment(thirdId, third, thirdStep);
+            hashSegment(fourthId, fourth, fourthStep);
+        }
+        int firstStart = first;
+        int secondStart = second;
+        int thirdStart = third;
+        int fourthStart = fourth;
+
+        byte[] a = faces[firstId];
+        byte[] b = faces[secondId];
+        byte[] c = faces[thirdId];
+        byte[] d = faces[fourthId];
+
+        for (int i = 0; i < size; i++) {
+            byte temp = a[first];
+            if (!changeDirection) {
+                a[first] = d[fourth];
+                d[fourth] = c[third];
+                c[third] = b[second];
+                b[second] = temp;
+            }
+            else {
+                a[first] = b[second];
+                b[second] = c[third];
+                c[third] = d[fourth];
+                d[fourth] = temp;
+            }
+            first += firstStep;
+            second += secondStep;
+            third += thirdStep;
+            fourth += fourthStep;
+        }
+
+        if (faceHashes != null) {
+            hashSegment(firstId, firstStart, firstStep);
+            hashSegment(secondId, secondStart, secondStep);
+            hashSegment(thirdId, thirdStart, thirdStep);
+            hashSegment(fourthId, fourthStart, fourthStep);
+        }
+    }
+
+    private int logicalIndex(int orientation, int physicalIndex) {
+        int row = physicalIndex / size;
+        int column = physicalIndex % size;
+        switch (orientation) {
+            case 1:
+                return column * size + size - 1 - row;
+            case 2:
+                return (size - 1 - row) * size + size - 1 - column;
+            case 3:
+                return (size - 1 - column) * size + row;
+            default:
+                return physicalIndex;
+        }
+    }
+
+    private void hashSegment(int sideId, int start, int step) {
+        byte[] face = faces[sideId];
+        int offset = sideId * size * size;
+        for (int orientation = 0; orientation < 4; orientation++) {
+            long hash = 0;
+            for (int i = 0, position = start; i < size; i++, position += step) {
+                hash ^= StateHash.key(offset + logicalIndex(orientation, position), face[position]);
+            }
+            faceHashes.accumulateAndGet(sideId * 4 + orientation, hash, StateHash::xor);
+        }
+    }
+
+    private void hashSticker(int sideId, int position, byte oldColor, byte newColor) {
+        int offset = sideId * size * size;
+        for (int orientation = 0; orientation < 4; orientation++) {
+            int sticker = offset + logicalIndex(orientation, position);
+            faceHashes.accumulateAndGet(sideId * 4 + orientation,
+                    StateHash.key(sticker, oldColor) ^ StateHash.key(sticker, newColor), StateHash::xor);
+        }
+    }
+
+    private void hashFaces() {
+        AtomicLongArray hashes = new AtomicLongArray(24);
+        int faceSize = size * size;
+        for (int sideId = 0; sideId < 6; sideId++) {
+            for (int orientation = 0; orientation < 4; orientation++) {
+                long hash = 0;
+                for (int position = 0; position < faceSize; position++) {
+                    hash ^= StateHash.key(sideId * faceSize + logicalIndex(orientation, position),
+                            faces[sideId][position]);
+                }
+                hashes.set(sideId * 4 + orientation, hash);
+            }
+        }
+        faceHashes = hashes;
+    }
+
+    @Override
+    public void trackHash() {
+        hashFaces();
+    }
+
+    @Override
+    public long stateHash() {
+        long hash = 0;
+        for (int sideId = 0; sideId < 6; sideId++) {
+            hash ^= faceHashes.get(sideId * 4 + orientations[sideId]);
+        }
+        return hash;
+    }
+
+    @Override
+    public void rotate(int sideId, int layer) {
+        int axis = MoveGeometry.axis(sideId);
+        int realLayer = MoveGeometry.realLayer(size, sideId, layer);
+        boolean changeDirection = MoveGeometry.isReversed(sideId);
+
+        int faceId = MoveGeometry.face(size, axis, realLayer);
+        if (faceId >= 0) {
+            rotateSideArray(faceId, MoveGeometry.turnsFaceClockwise(realLayer, changeDirection));
+        }
+
+        rotateNeighbours(axis, realLayer, changeDirection);
+    }
+
+    @Override
+    public void load(byte[] colors) {
+        int faceSize = size * size;
+        for (int sideId = 0; sideId < 6; sideId++) {
+            System.arraycopy(colors, sideId * faceSize, faces[sideId], 0, faceSize);
+            orientations[sideId] = 0;
+        }
+        if (faceHashes != null) {
+            hashFaces();
+        }
+    }
+
+    @Override
+    public void apply(MoveSequence sequence) {
+        int[] targets = sequence.getTargets();
+        int[] sources = sequence.getSources();
+        int faceSize = size * size;
+
+        byte[] values = new byte[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            int index = sources[i] % faceSize;
+            int sideId = sources[i] / faceSize;
+            values[i] = faces[sideId][index(sideId, index / size, index % size)];
+        }
+        for (int i = 0; i < targets.length; i++) {
+            int index = targets[i] % faceSize;
+            int sideId = targets[i] / faceSize;
+            int position = index(sideId, index / size, index % size);
+            if (faceHashes != null) {
+                hashSticker(sideId, position, faces[sideId][position], values[i]);
+            }
+            faces[sideId][position] = values[i];
+        }
+    }
+
+    @Override
+    public void appendTo(StringBuilder result) {
+        for (Side side : Side.values()) {
+            for (int row = 0; row < size; row++) {
+                appendRowTo(result, side.getId(), row);
+            }
+        }
+    }
+
+    @Override
+    public byte get(int sideId, int row, int column) {
+        return faces[sideId][index(sideId, row, column)];
+    }
+
+    @Override
+    public void copyDigits(int sideId, int from, byte[] target, int offset, int length) {
+        byte[] face = faces[sideId];
+        if (orientations[sideId] == 0) {
+            for (int i = 0; i < length; i++) {
+                target[offset + i] = (byte) ('0' + face[from + i]);
+            }
+            return;
+        }
+
+        int row = from / size;
+        int column = from % size;
+        int position = index(sideId, row, column);
+        int columnStep = step(sideId, row, 0, 0, 1);
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = (byte) ('0' + face[position]);
+            if (++column == size) {
+                column = 0;
+                row++;
+                if (row < size) {
+                    position = index(sideId, row, 0);
+                }
+            }
+            else {
+                position += columnStep;
+            }
+        }
+    }
+
+    @Override
+    public void appendRowTo(StringBuilder result, int sideId, int row) {
+        byte[] face = faces[sideId];
+        int position = index(sideId, row, 0);
+        int columnStep = step(sideId, row, 0, 0, 1);
+        for (int column = 0; column < size; column++) {
+            result.append((char) ('0' + face[position]));
+            position += columnStep;
+        }
+    }
+}
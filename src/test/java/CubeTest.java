@@ -1,15 +1,63 @@
 
+import concurrentcube.AxisScheduler;
+import concurrentcube.BackpressurePolicy;
+import concurrentcube.CallbackMode;
 import concurrentcube.Cube;
+import concurrentcube.CubeDelta;
+import concurrentcube.CubeMetrics;
+import concurrentcube.CubeUpdate;
+import concurrentcube.MappedCubeReader;
+import concurrentcube.MoveSequence;
+import concurrentcube.PackedState;
+import concurrentcube.SchedulerMode;
+import concurrentcube.ShowMode;
 import concurrentcube.Side;
+import concurrentcube.StateHash;
+import concurrentcube.StateModel;
 import org.junit.jupiter.api.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 public class CubeTest {
 
@@ -974,4 +1022,1884 @@ public class CubeTest {
     }
 
 
+    @Test
+    @DisplayName("Tests if rotations don't allocate memory")
+    void rotationAllocationTest() {
+        try {
+            com.sun.management.ThreadMXBean threadBean =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+
+            int cubeSize = 100;
+            int rotations = 100_000;
+            Cube cube = new Cube(cubeSize,
+                    (side, layer) -> {},
+                    (side, layer) -> {},
+                    () -> {},
+                    () -> {}
+            );
+
+            for (int i = 0; i < rotations; i++) {
+                cube.rotate(i % 6, i % cubeSize);
+            }
+
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < rotations; i++) {
+                cube.rotate(i % 6, i % cubeSize);
+            }
+            long allocatedAfter = threadBean.getThreadAllocatedBytes(threadId);
+
+            Assertions.assertTrue(allocatedAfter - allocatedBefore < rotations,
+                    "allocated " + (allocatedAfter - allocatedBefore) + " bytes");
+        } catch (InterruptedException e) {
+            Assertions.fail("got InterruptedException");
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if primitive rotation callbacks get every layer without boxing")
+    void primitiveCallbacksTest() {
+        try {
+            com.sun.management.ThreadMXBean threadBean =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+
+            int cubeSize = 300;
+            long[] sums = new long[2];
+            Cube cube = Cube.builder(cubeSize)
+                    .beforeRotation((side, layer) -> sums[0] += side * cubeSize + layer)
+                    .afterRotation((side, layer) -> sums[1] += side * cubeSize + layer)
+                    .build();
+
+            long expectedSum = 0;
+            for (int i = 0; i < 6 * cubeSize; i++) {
+                cube.rotate(i % 6, i % cubeSize);
+                expectedSum += (i % 6) * cubeSize + i % cubeSize;
+            }
+            Assertions.assertEquals(expectedSum, sums[0]);
+            Assertions.assertEquals(expectedSum, sums[1]);
+
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 6 * cubeSize; i++) {
+                cube.rotate(i % 6, i % cubeSize);
+            }
+            long allocatedAfter = threadBean.getThreadAllocatedBytes(threadId);
+
+            Assertions.assertTrue(allocatedAfter - allocatedBefore < 6 * cubeSize,
+                    "allocated " + (allocatedAfter - allocatedBefore) + " bytes");
+        } catch (InterruptedException e) {
+            Assertions.fail("got InterruptedException");
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if a rotation can finish while a slower rotation of the same axis is still running")
+    void earlyExitTest() {
+        try {
+            int cubeSize = 6;
+            CountDownLatch slowRotationStarted = new CountDownLatch(1);
+            CountDownLatch slowRotationReleased = new CountDownLatch(1);
+
+            Cube cube = Cube.builder(cubeSize)
+                    .schedulerMode(SchedulerMode.EARLY_EXIT)
+                    .afterRotation((side, layer) -> {
+                        if (layer == 5) {
+                            slowRotationStarted.countDown();
+                            try {
+                                slowRotationReleased.await(10, TimeUnit.SECONDS);
+                            } catch (InterruptedException ignored) {
+
+                            }
+                        }
+                    })
+                    .build();
+
+            Thread slowThread = new Thread(() -> {
+                try {
+                    cube.rotate(Side.FRONT.getId(), 5);
+                } catch (InterruptedException ignored) {
+
+                }
+            });
+            Thread fastThread = new Thread(() -> {
+                try {
+                    cube.rotate(Side.FRONT.getId(), 0);
+                } catch (InterruptedException ignored) {
+
+                }
+            });
+
+            slowThread.start();
+            Assertions.assertTrue(slowRotationStarted.await(10, TimeUnit.SECONDS));
+            fastThread.start();
+            fastThread.join(5000);
+
+            boolean fastThreadFinished = !fastThread.isAlive();
+            slowRotationReleased.countDown();
+            slowThread.join();
+            fastThread.join();
+
+            Assertions.assertTrue(fastThreadFinished);
+        } catch (InterruptedException e) {
+            Assertions.fail("got InterruptedException");
+        }
+    }
+
+    private void checkSchedulerSafety(AxisScheduler scheduler) {
+        AtomicInteger numberOfErrors = new AtomicInteger(0);
+        AtomicInteger numberOfRotations = new AtomicInteger(0);
+        Random random = new Random();
+
+        int cubeSize = 10;
+        Semaphore mutex = new Semaphore(1);
+        int[] countersLayers = new int[3 * cubeSize + 1];
+        int[] countersSides = new int[4];
+
+        Cube cube = Cube.builder(cubeSize)
+                .scheduler(scheduler)
+                .beforeRotation((side, layer) -> {
+                    mutex.acquireUninterruptibly();
+                    int realLayer = Side.getSideOfId(side).isDefault() ? layer : cubeSize - 1 - layer;
+                    countersLayers[(Side.getThreadTypeId(side) - 1) * cubeSize + realLayer + 1]++;
+                    countersSides[Side.getThreadTypeId(side)]++;
+                    mutex.release();
+                })
+                .afterRotation((side, layer) -> {
+                    mutex.acquireUninterruptibly();
+                    int realLayer = Side.getSideOfId(side).isDefault() ? layer : cubeSize - 1 - layer;
+                    countersLayers[(Side.getThreadTypeId(side) - 1) * cubeSize + realLayer + 1]--;
+                    countersSides[Side.getThreadTypeId(side)]--;
+                    numberOfRotations.incrementAndGet();
+                    mutex.release();
+                })
+                .beforeShowing(() -> {
+                    mutex.acquireUninterruptibly();
+                    countersSides[0]++;
+                    mutex.release();
+                })
+                .afterShowing(() -> {
+                    mutex.acquireUninterruptibly();
+                    countersSides[0]--;
+                    mutex.release();
+                })
+                .build();
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int threadId = 0; threadId < 200; threadId++) {
+            int finalThreadId = threadId;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int rotation = 0; rotation < 20; rotation++) {
+                        cube.rotate((finalThreadId + rotation) % 6, finalThreadId % cubeSize);
+                        numberOfErrors.addAndGet(
+                                !checkCountersNumberOfDifferentThreadsInSameLayer(countersLayers, mutex) ? 1 : 0);
+                        numberOfErrors.addAndGet(
+                                !checkCountersNumberOfDifferentThreadTypes(countersSides, mutex) ? 1 : 0);
+                        numberOfErrors.addAndGet(checkNumberOfColors(cube) ? 0 : 1);
+                    }
+
+                } catch (InterruptedException ignored) {
+
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            if (random.nextInt(4) == 0) {
+                thread.interrupt();
+            }
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException ignored) {
+
+            }
+        }
+
+        Assertions.assertEquals(0, numberOfErrors.get());
+        Assertions.assertTrue(numberOfRotations.get() > 0);
+        Assertions.assertTrue(checkNumberOfColors(cube));
+    }
+
+
+    @Test
+    @DisplayName("Tests safety and liveness of the early exit scheduler with interrupts")
+    void earlyExitSafetyTest() {
+        checkSchedulerSafety(AxisScheduler.earlyExit());
+    }
+
+    @Test
+    @DisplayName("Tests safety and liveness of the cohort scheduler with interrupts")
+    void cohortSchedulerSafetyTest() {
+        checkSchedulerSafety(AxisScheduler.cohorts(8, Duration.ofMillis(1)));
+    }
+
+    @Test
+    @DisplayName("Tests if a scheduler cannot be shared between cubes")
+    void sharedSchedulerTest() {
+        AxisScheduler shared = AxisScheduler.phaseBarrier();
+        Cube.builder(3).scheduler(shared).build();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Cube.builder(3).scheduler(shared).build());
+
+        Cube.Builder builder = Cube.builder(3).schedulerMode(SchedulerMode.EARLY_EXIT);
+        builder.build();
+        Assertions.assertDoesNotThrow(builder::build);
+    }
+
+
+    @Test
+    @DisplayName("Tests if the cohort scheduler switches axes after a bounded number of rotations")
+    void cohortSchedulerLivenessTest() {
+        try {
+            int cubeSize = 10;
+
+            for (int testId = 0; testId < 5; testId++) {
+                CountDownLatch rightRotated = new CountDownLatch(1);
+                AtomicInteger counterOfRightRotations = new AtomicInteger(0);
+
+                Cube cube = Cube.builder(cubeSize)
+                        .scheduler(AxisScheduler.cohorts(4, null))
+                        .afterRotation((side, layer) -> {
+                            if (side == Side.RIGHT.getId()) {
+                                counterOfRightRotations.incrementAndGet();
+                                rightRotated.countDown();
+                            }
+                        })
+                        .build();
+
+                ArrayList<Thread> threads = new ArrayList<>();
+                for (int threadId = 0; threadId < 20; threadId++) {
+                    int finalThreadId = threadId;
+                    threads.add(new Thread(() -> {
+                        try {
+                            while (rightRotated.getCount() > 0) {
+                                cube.rotate(Side.FRONT.getId(), finalThreadId % cubeSize);
+                            }
+
+                        } catch (InterruptedException ignored) {
+
+                        }
+                    }));
+                }
+
+                threads.add(new Thread(() -> {
+                    try {
+                        cube.rotate(Side.RIGHT.getId(), 0);
+                    } catch (InterruptedException ignored) {
+
+                    }
+                }));
+
+                for (Thread thread : threads) {
+                    thread.start();
+                }
+
+                boolean rotated = rightRotated.await(10, TimeUnit.SECONDS);
+                if (!rotated) {
+                    for (Thread thread : threads) {
+                        thread.interrupt();
+                    }
+                }
+
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+
+                Assertions.assertTrue(rotated, "the RIGHT rotation was starved by the FRONT rotations");
+                Assertions.assertEquals(1, counterOfRightRotations.get());
+            }
+
+        } catch (InterruptedException e) {
+            Assertions.fail("got InterruptedException");
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if a thread waiting for a busy layer can be interrupted")
+    void layerInterruptTest() {
+        try {
+            CountDownLatch firstRotationStarted = new CountDownLatch(1);
+            CountDownLatch firstRotationReleased = new CountDownLatch(1);
+            AtomicInteger numberOfInterrupts = new AtomicInteger(0);
+
+            Cube cube = Cube.builder(3)
+                    .beforeRotation((side, layer) -> {
+                        firstRotationStarted.countDown();
+                        try {
+                            firstRotationReleased.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException ignored) {
+
+                        }
+                    })
+                    .build();
+
+            Thread firstThread = new Thread(() -> {
+                try {
+                    cube.rotate(Side.FRONT.getId(), 0);
+                } catch (InterruptedException ignored) {
+
+                }
+            });
+            Thread secondThread = new Thread(() -> {
+                try {
+                    cube.rotate(Side.BACK.getId(), 2);
+                } catch (InterruptedException e) {
+                    numberOfInterrupts.incrementAndGet();
+                }
+            });
+
+            firstThread.start();
+            Assertions.assertTrue(firstRotationStarted.await(10, TimeUnit.SECONDS));
+            secondThread.start();
+            Thread.sleep(50);
+            secondThread.interrupt();
+            secondThread.join(5000);
+
+            Assertions.assertFalse(secondThread.isAlive());
+            Assertions.assertEquals(1, numberOfInterrupts.get());
+
+            firstRotationReleased.countDown();
+            firstThread.join();
+
+            cube.rotate(Side.UP.getId(), 1);
+            Assertions.assertTrue(checkNumberOfColors(cube));
+        } catch (InterruptedException e) {
+            Assertions.fail("got InterruptedException");
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if snapshot show mode gives the same results as exclusive show")
+    void snapshotShowTest() {
+        try {
+            Random random = new Random();
+
+            for (int cubeSize = 1; cubeSize <= 10; cubeSize++) {
+                AtomicInteger numberOfShows = new AtomicInteger(0);
+                Cube exclusiveCube = Cube.builder(cubeSize).build();
+                Cube snapshotCube = Cube.builder(cubeSize)
+                        .showMode(ShowMode.SNAPSHOT)
+                        .beforeShowing(numberOfShows::incrementAndGet)
+                        .afterShowing(numberOfShows::incrementAndGet)
+                        .build();
+
+                for (int i = 0; i < 100; i++) {
+                    int side = random.nextInt(6);
+                    int layer = random.nextInt(cubeSize);
+                    exclusiveCube.rotate(side, layer);
+                    snapshotCube.rotate(side, layer);
+
+                    Assertions.assertEquals(exclusiveCube.show(), snapshotCube.show());
+                }
+                Assertions.assertEquals(200, numberOfShows.get());
+                Assertions.assertTrue(checkNumberOfColors(snapshotCube));
+            }
+        } catch (InterruptedException e) {
+            Assertions.fail("got InterruptedException");
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if streamed show gives the same result as show")
+    void streamingShowTest() {
+        try {
+            for (int cubeSize = 1; cubeSize <= 100; cubeSize += 33) {
+                for (ShowMode showMode : ShowMode.values()) {
+                    AtomicInteger numberOfShows = new AtomicInteger(0);
+                    Cube cube = Cube.builder(cubeSize)
+                            .showMode(showMode)
+                            .beforeShowing(numberOfShows::incrementAndGet)
+                            .afterShowing(numberOfShows::incrementAndGet)
+                            .build();
+                    randomize(cube);
+
+                    String expected = cube.show();
+
+                    StringBuilder builder = new StringBuilder();
+                    cube.show(builder);
+                    Assertions.assertEquals(expected, builder.toString());
+
+                    StringWriter writer = new StringWriter();
+                    cube.show(writer);
+                    Assertions.assertEquals(expected, writer.toString());
+
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    cube.show(Channels.newChannel(bytes));
+                    Assertions.assertEquals(expected, bytes.toString(StandardCharsets.US_ASCII));
+
+                    Assertions.assertEquals(8, numberOfShows.get());
+                }
+            }
+        } catch (InterruptedException | IOException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if show rejects a cube too large for a String while streamed show still works")
+    void oversizedShowTest() {
+        int cubeSize = 18919;
+        long stickers = 6L * cubeSize * cubeSize;
+        Assertions.assertTrue(stickers > Integer.MAX_VALUE);
+        Assumptions.assumeTrue(Runtime.getRuntime().maxMemory() > stickers + (256L << 20));
+
+        try {
+            AtomicInteger numberOfShows = new AtomicInteger(0);
+            Cube cube = Cube.builder(cubeSize)
+                    .beforeShowing(numberOfShows::incrementAndGet)
+                    .afterShowing(numberOfShows::incrementAndGet)
+                    .build();
+
+            Assertions.assertThrows(IllegalStateException.class, cube::show);
+            Assertions.assertThrows(IllegalStateException.class, cube::showAsync);
+            Assertions.assertEquals(0, numberOfShows.get());
+
+            long[] written = new long[1];
+            cube.show(new Writer() {
+                @Override
+                public void write(char[] chars, int offset, int length) {
+                    written[0] += length;
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            Assertions.assertEquals(stickers, written[0]);
+            Assertions.assertEquals(2, numberOfShows.get());
+        } catch (InterruptedException | IOException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if a cube too large for a String can be streamed to a channel")
+    void oversizedStreamingShowTest() {
+        int cubeSize = 18919;
+        long faceSize = (long) cubeSize * cubeSize;
+        Assumptions.assumeTrue(Runtime.getRuntime().maxMemory() > 6 * faceSize + (256L << 20));
+
+        try {
+            Cube reference = Cube.builder(3).build();
+            Cube cube = Cube.builder(cubeSize).build();
+            reference.rotate(Side.FRONT.getId(), 0);
+            cube.rotate(Side.FRONT.getId(), 0);
+
+            long[] expected = new long[6 * 6];
+            String shown = reference.show();
+            for (int i = 0; i < shown.length(); i++) {
+                expected[i / 9 * 6 + shown.charAt(i) - '0']++;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = expected[i] == 9 ? faceSize : expected[i] == 6 ? faceSize - cubeSize : expected[i] / 3 * cubeSize;
+            }
+
+            long[] counts = new long[6 * 6];
+            long[] position = new long[1];
+            cube.show(new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer buffer) {
+                    int length = buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        counts[(int) (position[0]++ / faceSize) * 6 + buffer.get() - '0']++;
+                    }
+                    return length;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+
+            Assertions.assertEquals(6 * faceSize, position[0]);
+            Assertions.assertTrue(position[0] > Integer.MAX_VALUE);
+            Assertions.assertArrayEquals(expected, counts);
+        } catch (InterruptedException | IOException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if a batch of rotations gives the same result as single rotations")
+    void rotateAllTest() {
+        try {
+            Random random = new Random();
+
+            for (int cubeSize = 1; cubeSize <= 10; cubeSize++) {
+                AtomicInteger numberOfCallbacks = new AtomicInteger(0);
+                Cube batchCube = Cube.builder(cubeSize)
+                        .beforeRotation((side, layer) -> numberOfCallbacks.incrementAndGet())
+                        .afterRotation((side, layer) -> numberOfCallbacks.incrementAndGet())
+                        .build();
+                Cube cube = new Cube(cubeSize,
+                        (side, layer) -> {},
+                        (side, layer) -> {},
+                        () -> {},
+                        () -> {}
+                );
+
+                int[] sides = new int[200];
+                int[] layers = new int[200];
+                for (int i = 0; i < sides.length; i++) {
+                    sides[i] = i < 100 ? random.nextInt(6) : (i / 10) % 6;
+                    layers[i] = random.nextInt(cubeSize);
+                    cube.rotate(sides[i], layers[i]);
+                }
+                batchCube.rotateAll(sides, layers);
+
+                Assertions.assertEquals(cube.show(), batchCube.show());
+                Assertions.assertEquals(2 * sides.length, numberOfCallbacks.get());
+            }
+
+            Cube cube = Cube.builder(3).build();
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> cube.rotateAll(new int[] {0, 1}, new int[] {0}));
+        } catch (InterruptedException e) {
+            Assertions.fail("got InterruptedException");
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if asynchronous rotations and shows give the same results as synchronous ones")
+    void asyncTest() {
+        try {
+            Random random = new Random();
+
+            for (int cubeSize = 1; cubeSize <= 10; cubeSize++) {
+                Cube asyncCube = Cube.builder(cubeSize).build();
+                Cube cube = Cube.builder(cubeSize).build();
+
+                for (int i = 0; i < 100; i++) {
+                    int side = random.nextInt(6);
+                    int layer = random.nextInt(cubeSize);
+                    cube.rotate(side, layer);
+                    asyncCube.rotateAsync(side, layer).get();
+                }
+
+                Assertions.assertEquals(cube.show(), asyncCube.showAsync().get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+    private void checkManyWaitingAsyncOperations(AxisScheduler scheduler) {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            int cubeSize = 3;
+            int operations = 100_000;
+            CountDownLatch showStarted = new CountDownLatch(1);
+            CountDownLatch showReleased = new CountDownLatch(1);
+            AtomicInteger numberOfRotations = new AtomicInteger(0);
+
+            Cube cube = Cube.builder(cubeSize)
+                    .scheduler(scheduler)
+                    .asyncExecutor(executor)
+                    .afterRotation((side, layer) -> numberOfRotations.incrementAndGet())
+                    .beforeShowing(() -> {
+                        showStarted.countDown();
+                        try {
+                            showReleased.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException ignored) {
+
+                        }
+                    })
+                    .build();
+
+            Thread showThread = new Thread(() -> {
+                try {
+                    cube.show();
+                } catch (InterruptedException ignored) {
+
+                }
+            });
+            showThread.start();
+            Assertions.assertTrue(showStarted.await(10, TimeUnit.SECONDS));
+
+            ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < operations; i++) {
+                futures.add(cube.rotateAsync(i % 6, (i / 6) % cubeSize));
+            }
+            Assertions.assertEquals(0, numberOfRotations.get());
+
+            showReleased.countDown();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+            showThread.join();
+
+            Assertions.assertEquals(operations, numberOfRotations.get());
+            Assertions.assertTrue(checkNumberOfColors(cube));
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            Assertions.fail("got " + e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Tests if many asynchronous rotations can wait without a thread each")
+    void manyWaitingAsyncOperationsTest() {
+        checkManyWaitingAsyncOperations(AxisScheduler.phaseBarrier());
+        checkManyWaitingAsyncOperations(AxisScheduler.cohorts(16, null));
+    }
+
+    private static void keepRotatingAsync(Cube cube, AtomicBoolean running, int layer) {
+        if (running.get()) {
+            cube.rotateAsync(Side.FRONT.getId(), layer).thenRun(() -> keepRotatingAsync(cube, running, layer));
+        }
+    }
+
+    @Test
+    @DisplayName("Tests if a steady stream of asynchronous rotations cannot starve another axis")
+    void asyncStarvationTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (AxisScheduler scheduler : new AxisScheduler[] {
+                    AxisScheduler.phaseBarrier(), AxisScheduler.cohorts(16, Duration.ofMillis(50))}) {
+                int cubeSize = 8;
+                CountDownLatch rotating = new CountDownLatch(cubeSize);
+                Cube cube = Cube.builder(cubeSize)
+                        .scheduler(scheduler)
+                        .asyncExecutor(executor)
+                        .beforeRotation((side, layer) -> {
+                            if (side == Side.FRONT.getId()) {
+                                rotating.countDown();
+                                try {
+                                    Thread.sleep(1);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            }
+                        })
+                        .build();
+
+                AtomicBoolean running = new AtomicBoolean(true);
+                for (int layer = 0; layer < cubeSize; layer++) {
+                    keepRotatingAsync(cube, running, layer);
+                }
+                Assertions.assertTrue(rotating.await(10, TimeUnit.SECONDS));
+
+                Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                    cube.rotate(Side.UP.getId(), 0);
+                    cube.rotate(Side.FRONT.getId(), 1);
+                    cube.show();
+                });
+                running.set(false);
+            }
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    @DisplayName("Tests if asynchronous and synchronous operations can be mixed")
+    void mixedAsyncTest() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (AxisScheduler scheduler : new AxisScheduler[] {
+                    AxisScheduler.phaseBarrier(), AxisScheduler.earlyExit()}) {
+                int cubeSize = 5;
+                Cube cube = Cube.builder(cubeSize)
+                        .scheduler(scheduler)
+                        .asyncExecutor(executor)
+                        .build();
+
+                ArrayList<CompletableFuture<?>> futures = new ArrayList<>();
+                ArrayList<Thread> threads = new ArrayList<>();
+                for (int threadId = 0; threadId < 10; threadId++) {
+                    int finalThreadId = threadId;
+                    threads.add(new Thread(() -> {
+                        try {
+                            for (int rotation = 0; rotation < 100; rotation++) {
+                                cube.rotate((finalThreadId + rotation) % 6, rotation % cubeSize);
+                            }
+                        } catch (InterruptedException ignored) {
+
+                        }
+                    }));
+                }
+                for (Thread thread : threads) {
+                    thread.start();
+                }
+                for (int i = 0; i < 1000; i++) {
+                    futures.add(i % 10 == 0 ? cube.showAsync() : cube.rotateAsync(i % 6, i % cubeSize));
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+
+                Assertions.assertTrue(checkNumberOfColors(cube));
+            }
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            Assertions.fail("got " + e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    @Test
+    @DisplayName("Metrics record axis waits, phase switches, layer collisions and show stalls")
+    void metricsTest() {
+        CountDownLatch showing = new CountDownLatch(1);
+        CountDownLatch rotatorsWaiting = new CountDownLatch(1);
+        CountDownLatch rotating = new CountDownLatch(1);
+        CountDownLatch collided = new CountDownLatch(1);
+        Cube cube = Cube.builder(3)
+                .beforeRotation((side, layer) -> {
+                    rotating.countDown();
+                    try {
+                        collided.await();
+                    } catch (InterruptedException ignored) {
+
+                    }
+                })
+                .beforeShowing(() -> {
+                    showing.countDown();
+                    try {
+                        rotatorsWaiting.await();
+                    } catch (InterruptedException ignored) {
+
+                    }
+                })
+                .metrics(true)
+                .build();
+
+        try {
+            Thread shower = new Thread(() -> {
+                try {
+                    cube.show();
+                } catch (InterruptedException ignored) {
+
+                }
+            });
+            shower.start();
+            showing.await();
+
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                threads.add(new Thread(() -> {
+                    try {
+                        cube.rotate(Side.FRONT.getId(), 0);
+                    } catch (InterruptedException ignored) {
+
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                while (!(LockSupport.getBlocker(thread) instanceof Condition)) {
+                    Thread.yield();
+                }
+            }
+            rotatorsWaiting.countDown();
+            shower.join();
+
+            rotating.await();
+            while (cube.metrics().getLayerCollisions(0) == 0) {
+                Thread.yield();
+            }
+            collided.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            CubeMetrics metrics = cube.metrics();
+            Assertions.assertEquals(1, metrics.getAxisWait(0).getCount());
+            Assertions.assertEquals(2, metrics.getAxisWait(1).getCount());
+            Assertions.assertEquals(2, metrics.getShowStalls().getCount());
+            Assertions.assertTrue(metrics.getShowStalls().getMax() > 0);
+            Assertions.assertEquals(2, metrics.getPhaseSwitches());
+            Assertions.assertEquals(3, metrics.getCohortSizes().getSum());
+            Assertions.assertEquals(1, metrics.getLayerCollisions(0));
+            Assertions.assertEquals(0, metrics.getLayerCollisions(1));
+            Assertions.assertEquals(1, metrics.getLayerWait().getCount());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = cube.registerMetrics("metricsTest");
+            Assertions.assertEquals(2L, server.getAttribute(name, "PhaseSwitches"));
+            Assertions.assertArrayEquals(new long[]{1, 0, 0}, (long[]) server.getAttribute(name, "LayerCollisions"));
+            cube.close();
+            Assertions.assertFalse(server.isRegistered(name));
+
+            Cube reopened = Cube.builder(3).metrics(true).build();
+            Assertions.assertEquals(name, reopened.registerMetrics("metricsTest"));
+            reopened.close();
+            Assertions.assertFalse(server.isRegistered(name));
+        } catch (InterruptedException | IOException | JMException e) {
+            Assertions.fail("got " + e);
+        }
+
+        Assertions.assertThrows(IllegalStateException.class, () -> new Cube(3, (x, y) -> {}, (x, y) -> {}, () -> {}, () -> {}).metrics());
+    }
+
+
+    @Test
+    @DisplayName("Metrics record axis and layer waits of asynchronous rotations and shows")
+    void asyncMetricsTest() {
+        for (AxisScheduler scheduler : new AxisScheduler[]{AxisScheduler.phaseBarrier(), AxisScheduler.cohorts(4, null)}) {
+            CountDownLatch entered = new CountDownLatch(1);
+            CountDownLatch released = new CountDownLatch(1);
+            Cube cube = Cube.builder(3)
+                    .scheduler(scheduler)
+                    .metrics(true)
+                    .beforeRotation((side, layer) -> {
+                        if (entered.getCount() > 0) {
+                            entered.countDown();
+                            try {
+                                released.await();
+                            } catch (InterruptedException ignored) {
+
+                            }
+                        }
+                    })
+                    .build();
+
+            try {
+                Thread rotator = new Thread(() -> {
+                    try {
+                        cube.rotate(Side.FRONT.getId(), 0);
+                    } catch (InterruptedException ignored) {
+
+                    }
+                });
+                rotator.start();
+                entered.await();
+
+                CompletableFuture<Void> sameLayer = cube.rotateAsync(Side.FRONT.getId(), 0);
+                CompletableFuture<Void> otherAxis = cube.rotateAsync(Side.RIGHT.getId(), 1);
+                CompletableFuture<String> shown = cube.showAsync();
+                while (cube.metrics().getLayerCollisions(0) == 0) {
+                    Thread.yield();
+                }
+                released.countDown();
+                rotator.join();
+                CompletableFuture.allOf(sameLayer, otherAxis, shown).get(10, TimeUnit.SECONDS);
+
+                CubeMetrics metrics = cube.metrics();
+                Assertions.assertEquals(2, metrics.getAxisWait(1).getCount());
+                Assertions.assertEquals(1, metrics.getAxisWait(2).getCount());
+                Assertions.assertEquals(1, metrics.getAxisWait(0).getCount());
+                Assertions.assertEquals(1, metrics.getLayerCollisions(0));
+                Assertions.assertEquals(1, metrics.getLayerWait().getCount());
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                Assertions.fail("got " + e);
+            }
+        }
+    }
+
+
+    @Test
+    @DisplayName("Flight Recorder events are emitted for waits, rotations and shows")
+    void flightRecorderEventsTest() {
+        Cube cube = Cube.builder(3).build();
+
+        try (Recording recording = new Recording()) {
+            for (String event : new String[]{"AxisWait", "LayerWait", "Rotation", "Show"}) {
+                recording.enable("concurrentcube." + event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            cube.rotate(Side.FRONT.getId(), 1);
+            cube.rotate(Side.BACK.getId(), 2);
+            cube.show();
+            cube.rotateAsync(Side.UP.getId(), 0).get(10, TimeUnit.SECONDS);
+
+            recording.stop();
+            Path file = Files.createTempFile("cube", ".jfr");
+            try {
+                recording.dump(file);
+
+                HashMap<String, Integer> counts = new HashMap<>();
+                boolean sawBack = false;
+                for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                    String name = event.getEventType().getName();
+                    counts.merge(name, 1, Integer::sum);
+                    if (name.equals("concurrentcube.Rotation") && event.getInt("side") == Side.BACK.getId()) {
+                        sawBack = event.getInt("layer") == 2 && event.getInt("threadType") == 1;
+                    }
+                }
+                Assertions.assertEquals(3, counts.get("concurrentcube.AxisWait"));
+                Assertions.assertEquals(2, counts.get("concurrentcube.LayerWait"));
+                Assertions.assertEquals(3, counts.get("concurrentcube.Rotation"));
+                Assertions.assertEquals(1, counts.get("concurrentcube.Show"));
+                Assertions.assertTrue(sawBack);
+            } finally {
+                Files.delete(file);
+            }
+        } catch (InterruptedException | ExecutionException | TimeoutException | IOException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    @Test
+    @DisplayName("Permutation tables give the same states as the sticker model")
+    void permutationTablesTest() {
+        Random random = new Random(15);
+        try {
+            for (int cubeSize = 1; cubeSize <= 5; cubeSize++) {
+                Cube stickers = Cube.builder(cubeSize).build();
+                Cube tables = Cube.builder(cubeSize).stateModel(StateModel.PERMUTATION_TABLES).build();
+
+                for (int i = 0; i < 1000; i++) {
+                    int side = random.nextInt(6);
+                    int layer = random.nextInt(cubeSize);
+                    stickers.rotate(side, layer);
+                    tables.rotate(side, layer);
+                    Assertions.assertEquals(stickers.show(), tables.show());
+                }
+                Assertions.assertEquals(stickers.toString(), tables.toString());
+            }
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Cube.builder(6).stateModel(StateModel.PERMUTATION_TABLES).build());
+    }
+
+
+    @Test
+    @DisplayName("Cubie model shows the same states as the sticker model")
+    void cubieModelTest() {
+        Random random = new Random(16);
+        Cube stickers = Cube.builder(3).build();
+        Cube cubies = Cube.builder(3).stateModel(StateModel.CUBIES).build();
+        try {
+            Assertions.assertEquals(stickers.show(), cubies.show());
+            for (int i = 0; i < 5000; i++) {
+                int side = random.nextInt(6);
+                int layer = random.nextInt(3);
+                stickers.rotate(side, layer);
+                cubies.rotate(side, layer);
+                Assertions.assertEquals(stickers.show(), cubies.show());
+            }
+            Assertions.assertEquals(stickers.toString(), cubies.toString());
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+
+        Cube concurrent = Cube.builder(3).stateModel(StateModel.CUBIES).build();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> randomize(concurrent)));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+        Assertions.assertTrue(checkNumberOfColors(concurrent));
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Cube.builder(4).stateModel(StateModel.CUBIES).build());
+    }
+
+
+    @Test
+    @DisplayName("Compiled move sequences give the same state as rotating move by move")
+    void moveSequenceTest() {
+        Random random = new Random(17);
+        try {
+            for (int cubeSize : new int[]{1, 2, 3, 5, 8, 110}) {
+                int[] sides = new int[50];
+                int[] layers = new int[50];
+                for (int i = 0; i < sides.length; i++) {
+                    sides[i] = random.nextInt(6);
+                    layers[i] = random.nextInt(cubeSize);
+                }
+                MoveSequence sequence = MoveSequence.compile(cubeSize, sides, layers);
+
+                ArrayList<Cube> cubes = new ArrayList<>();
+                cubes.add(Cube.builder(cubeSize).build());
+                if (cubeSize <= 5) {
+                    cubes.add(Cube.builder(cubeSize).stateModel(StateModel.PERMUTATION_TABLES).build());
+                }
+                if (cubeSize == 3) {
+                    cubes.add(Cube.builder(cubeSize).stateModel(StateModel.CUBIES).build());
+                }
+
+                Cube expected = Cube.builder(cubeSize).build();
+                for (int repetition = 0; repetition < 3; repetition++) {
+                    expected.rotateAll(sides, layers);
+                    for (Cube cube : cubes) {
+                        cube.apply(sequence);
+                        Assertions.assertEquals(expected.show(), cube.show());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Cube.builder(4).build().apply(MoveSequence.compile(3, new int[]{0}, new int[]{0})));
+    }
+
+
+    @Test
+    @DisplayName("Compiled move sequences emit callbacks per move or per sequence and exclude other rotations")
+    void moveSequenceCallbacksTest() {
+        AtomicInteger before = new AtomicInteger();
+        AtomicInteger after = new AtomicInteger();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger overlapping = new AtomicInteger();
+        Cube cube = Cube.builder(4)
+                .beforeRotation((side, layer) -> {
+                    before.incrementAndGet();
+                    if (active.incrementAndGet() > 1) {
+                        overlapping.incrementAndGet();
+                    }
+                })
+                .afterRotation((side, layer) -> {
+                    after.incrementAndGet();
+                    active.decrementAndGet();
+                })
+                .build();
+
+        MoveSequence sequence = MoveSequence.compile(4, new int[]{0, 2, 3, 5}, new int[]{0, 1, 3, 2});
+        try {
+            cube.apply(sequence, CallbackMode.PER_MOVE);
+            Assertions.assertEquals(4, before.get());
+            Assertions.assertEquals(4, after.get());
+
+            cube.apply(sequence, CallbackMode.PER_SEQUENCE);
+            Assertions.assertEquals(5, before.get());
+            Assertions.assertEquals(5, after.get());
+
+            overlapping.set(0);
+            active.set(0);
+            Thread rotating = new Thread(() -> randomize(cube));
+            rotating.start();
+            for (int i = 0; i < 100; i++) {
+                cube.apply(sequence, CallbackMode.PER_SEQUENCE);
+            }
+            rotating.join();
+            Assertions.assertEquals(0, overlapping.get());
+            Assertions.assertTrue(checkNumberOfColors(cube));
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    @Test
+    @DisplayName("Mapped cube state survives reopening and can be read by a separate reader")
+    void mappedFileTest() {
+        Path file = null;
+        Path crashed = null;
+        try {
+            file = Files.createTempFile("cube", ".map");
+            Files.delete(file);
+
+            Random random = new Random(18);
+            Cube heap = Cube.builder(7).build();
+            Cube mapped = Cube.builder(7).mappedFile(file).build();
+            for (int i = 0; i < 500; i++) {
+                int side = random.nextInt(6);
+                int layer = random.nextInt(7);
+                heap.rotate(side, layer);
+                mapped.rotate(side, layer);
+            }
+            Assertions.assertEquals(heap.show(), mapped.show());
+            mapped.close();
+
+            Cube reopened = Cube.builder(7).mappedFile(file).build();
+            Assertions.assertEquals(heap.show(), reopened.show());
+
+            MappedCubeReader reader = MappedCubeReader.open(file);
+            Assertions.assertEquals(7, reader.getSize());
+            Assertions.assertEquals(heap.show(), reader.show());
+            Assertions.assertEquals(0, reader.getVersion() % 2);
+            Assertions.assertTrue(reader.getVersion() > 0);
+
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                threads.add(new Thread(() -> {
+                    for (int j = 0; j < 20; j++) {
+                        randomize(reopened);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            byte[] stickers = new byte[6 * 7 * 7];
+            for (int i = 0; i < 1000; i++) {
+                reader.copyStickers(stickers);
+                int[] counts = new int[6];
+                for (byte color : stickers) {
+                    counts[color]++;
+                }
+                for (int count : counts) {
+                    Assertions.assertEquals(7 * 7, count);
+                }
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assertions.assertEquals(reopened.show(), reader.show());
+
+            Path reopenedFile = file;
+            Assertions.assertThrows(UncheckedIOException.class, () -> Cube.builder(7).mappedFile(reopenedFile).build());
+            reopened.close();
+            Assertions.assertThrows(UncheckedIOException.class, () -> Cube.builder(6).mappedFile(reopenedFile).build());
+
+            crashed = Files.createTempFile("crashed", ".map");
+            Path crashCopy = crashed;
+            String expected;
+            try (Cube crashing = Cube.builder(7).mappedFile(reopenedFile).afterRotation((side, layer) -> {
+                try {
+                    Files.copy(reopenedFile, crashCopy, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).build()) {
+                crashing.rotate(Side.FRONT.getId(), 0);
+                expected = crashing.show();
+            }
+            Assertions.assertEquals(1, MappedCubeReader.open(crashCopy).getVersion() % 2);
+            try (Cube recovered = Cube.builder(7).mappedFile(crashCopy).build()) {
+                Assertions.assertEquals(expected, recovered.show());
+                Assertions.assertEquals(0, MappedCubeReader.open(crashCopy).getVersion() % 2);
+            }
+        } catch (InterruptedException | IOException e) {
+            Assertions.fail("got " + e);
+        } finally {
+            if (file != null) {
+                file.toFile().delete();
+            }
+            if (crashed != null) {
+                crashed.toFile().delete();
+            }
+        }
+    }
+
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (Files.exists(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+
+    @Test
+    @DisplayName("Journaled rotations are replayed after reopening, ignoring a torn tail")
+    void journalTest() {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("journal");
+            String expected;
+            try (Cube cube = Cube.builder(5).journal(directory).journalSegmentSize(1024).build()) {
+                ArrayList<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    threads.add(new Thread(() -> randomize(cube)));
+                }
+                for (Thread thread : threads) {
+                    thread.start();
+                }
+                ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    futures.add(cube.rotateAsync(i % 6, i % 5));
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+
+                futures.clear();
+                for (int i = 0; i < 50; i++) {
+                    int layer = i % 5;
+                    futures.add(cube.rotateAsync(Side.FRONT.getId(), layer).thenRun(() -> {
+                        try {
+                            cube.rotate(Side.UP.getId(), layer);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+                cube.apply(MoveSequence.compile(5, new int[]{0, 2, 3}, new int[]{1, 4, 0}));
+                expected = cube.show();
+            }
+
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertTrue(files.count() > 1);
+            }
+
+            try (Cube reopened = Cube.builder(5).journal(directory).journalSegmentSize(1024).build()) {
+                Assertions.assertEquals(expected, reopened.show());
+            }
+
+            Path last;
+            try (Stream<Path> files = Files.list(directory)) {
+                last = files.sorted().reduce((first, second) -> second).orElseThrow();
+            }
+            Files.write(last, new byte[]{1, 2, 3, 4, 5, 6, 7}, StandardOpenOption.APPEND);
+
+            try (Cube reopened = Cube.builder(5).journal(directory).build()) {
+                Assertions.assertEquals(expected, reopened.show());
+                reopened.rotate(Side.LEFT.getId(), 2);
+                expected = reopened.show();
+            }
+            try (Cube reopened = Cube.builder(5).journal(directory).build()) {
+                Assertions.assertEquals(expected, reopened.show());
+            }
+
+            Path journal = directory;
+            Assertions.assertThrows(UncheckedIOException.class, () -> Cube.builder(4).journal(journal).build());
+        } catch (InterruptedException | ExecutionException | TimeoutException | IOException e) {
+            Assertions.fail("got " + e);
+        } finally {
+            if (directory != null) {
+                try {
+                    deleteDirectory(directory);
+                } catch (IOException ignored) {
+
+                }
+            }
+        }
+    }
+
+
+    @Test
+    @DisplayName("Checkpoints bound the replayed journal and restore every state model")
+    void checkpointTest() {
+        Path directory = null;
+        try {
+            for (StateModel stateModel : new StateModel[]{StateModel.STICKERS, StateModel.CUBIES}) {
+                directory = Files.createTempDirectory("checkpoint");
+                String expected;
+                try (Cube cube = Cube.builder(3).stateModel(stateModel)
+                        .journal(directory).journalSegmentSize(256).build()) {
+                    for (int i = 0; i < 5; i++) {
+                        randomize(cube);
+                    }
+                    Assertions.assertEquals(500, cube.checkpoint());
+                    randomize(cube);
+                    Assertions.assertEquals(600, cube.checkpoint());
+
+                    try (Stream<Path> files = Files.list(directory)) {
+                        Assertions.assertTrue(files.filter(file -> file.getFileName().toString().startsWith("journal-"))
+                                .count() <= 10);
+                    }
+                    try (Stream<Path> files = Files.list(directory)) {
+                        Assertions.assertEquals(2, files.filter(file -> file.getFileName().toString()
+                                .startsWith("checkpoint-")).count());
+                    }
+
+                    randomize(cube);
+                    expected = cube.show();
+                }
+
+                try (Cube reopened = Cube.builder(3).stateModel(stateModel)
+                        .journal(directory).journalSegmentSize(256).build()) {
+                    Assertions.assertEquals(expected, reopened.show());
+                    Assertions.assertEquals(700, reopened.checkpoint());
+                }
+                try (Cube reopened = Cube.builder(3).stateModel(stateModel).journal(directory).build()) {
+                    Assertions.assertEquals(expected, reopened.show());
+                }
+
+                Files.write(directory.resolve(String.format("checkpoint-%019d.bin", 700)), new byte[]{1, 2, 3});
+                try (Cube reopened = Cube.builder(3).stateModel(stateModel).journal(directory).build()) {
+                    Assertions.assertEquals(expected, reopened.show());
+                }
+                deleteDirectory(directory);
+            }
+
+            directory = Files.createTempDirectory("checkpoint");
+            try (Cube cube = Cube.builder(4).journal(directory)
+                    .checkpointInterval(Duration.ofMillis(20)).build()) {
+                randomize(cube);
+                Path finalDirectory = directory;
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                boolean checkpointed = false;
+                while (!checkpointed && System.nanoTime() < deadline) {
+                    Thread.sleep(20);
+                    try (Stream<Path> files = Files.list(finalDirectory)) {
+                        checkpointed = files.anyMatch(file -> file.getFileName().toString()
+                                .equals(String.format("checkpoint-%019d.bin", 100)));
+                    }
+                }
+                Assertions.assertTrue(checkpointed);
+            }
+        } catch (InterruptedException | IOException e) {
+            Assertions.fail("got " + e);
+        } finally {
+            if (directory != null) {
+                try {
+                    deleteDirectory(directory);
+                } catch (IOException ignored) {
+
+                }
+            }
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Cube.builder(3).checkpointInterval(Duration.ofSeconds(1)).build());
+    }
+
+
+    @Test
+    @DisplayName("Background checkpoint failures are reported by the cube and by close()")
+    void checkpointFailureTest() {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("checkpoint");
+            Files.createDirectory(directory.resolve("checkpoint-tmp"));
+            Cube cube = Cube.builder(3).journal(directory).checkpointInterval(Duration.ofMillis(1)).build();
+            cube.rotate(0, 0);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (cube.lastCheckpointFailure() == null && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assertions.assertTrue(cube.lastCheckpointFailure() instanceof IOException);
+            Assertions.assertThrows(IOException.class, cube::close);
+            Assertions.assertNull(cube.lastCheckpointFailure());
+        } catch (InterruptedException | IOException e) {
+            Assertions.fail("got " + e);
+        } finally {
+            if (directory != null) {
+                try {
+                    deleteDirectory(directory);
+                } catch (IOException ignored) {
+
+                }
+            }
+        }
+    }
+
+
+    @Test
+    @DisplayName("Packed state decodes to the show() output")
+    void packedStateTest() {
+        Random random = new Random(21);
+        try {
+            for (int cubeSize = 1; cubeSize <= 9; cubeSize++) {
+                Cube cube = Cube.builder(cubeSize).build();
+                for (int i = 0; i < 100; i++) {
+                    cube.rotate(random.nextInt(6), random.nextInt(cubeSize));
+                }
+
+                long[] packed = cube.showPacked();
+                Assertions.assertEquals(PackedState.words(cubeSize), packed.length);
+                Assertions.assertEquals(cube.show(), PackedState.toShowString(packed, cubeSize));
+
+                ByteBuffer buffer = ByteBuffer.allocate(packed.length * Long.BYTES);
+                cube.snapshotInto(buffer);
+                buffer.flip();
+                for (long word : packed) {
+                    Assertions.assertEquals(word, buffer.getLong());
+                }
+            }
+
+            Cube cube = Cube.builder(3).build();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cube.snapshotInto(new long[2]));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cube.snapshotInto(ByteBuffer.allocate(16)));
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    @Test
+    @DisplayName("State hash matches a hash of show() after random rotations")
+    void stateHashTest() {
+        Random random = new Random(22);
+        try {
+            for (int cubeSize = 1; cubeSize <= 7; cubeSize++) {
+                ArrayList<Cube> cubes = new ArrayList<>();
+                cubes.add(Cube.builder(cubeSize).stateHash(true).build());
+                if (cubeSize <= 5) {
+                    cubes.add(Cube.builder(cubeSize).stateModel(StateModel.PERMUTATION_TABLES).stateHash(true).build());
+                }
+                if (cubeSize == 3) {
+                    cubes.add(Cube.builder(cubeSize).stateModel(StateModel.CUBIES).stateHash(true).build());
+                }
+
+                for (Cube cube : cubes) {
+                    Assertions.assertEquals(StateHash.of(cubeSize, cube.show()), cube.stateHash());
+
+                    int size = cubeSize;
+                    Thread[] threads = new Thread[4];
+                    for (int t = 0; t < threads.length; t++) {
+                        long seed = random.nextLong();
+                        threads[t] = new Thread(() -> {
+                            Random threadRandom = new Random(seed);
+                            try {
+                                for (int i = 0; i < 200; i++) {
+                                    cube.rotate(threadRandom.nextInt(6), threadRandom.nextInt(size));
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+                        threads[t].start();
+                    }
+                    for (Thread thread : threads) {
+                        thread.join();
+                    }
+                    Assertions.assertEquals(StateHash.of(cubeSize, cube.show()), cube.stateHash());
+
+                    int[] sides = new int[20];
+                    int[] layers = new int[20];
+                    for (int i = 0; i < sides.length; i++) {
+                        sides[i] = random.nextInt(6);
+                        layers[i] = random.nextInt(cubeSize);
+                    }
+                    cube.apply(MoveSequence.compile(cubeSize, sides, layers));
+                    Assertions.assertEquals(StateHash.of(cubeSize, cube.show()), cube.stateHash());
+                }
+            }
+
+            Assertions.assertNotEquals(Cube.builder(3).stateHash(true).build().stateHash(),
+                    StateHash.of(3, "100000000111111111222222222333333333444444444555555555"));
+            Assertions.assertThrows(IllegalStateException.class, () -> Cube.builder(3).build().stateHash());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> StateHash.of(3, "0123"));
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    private static Set<Side> solvedFacesOf(String shown, int size) {
+        Set<Side> solved = EnumSet.noneOf(Side.class);
+        int faceSize = size * size;
+        for (Side side : Side.values()) {
+            String face = shown.substring(side.getId() * faceSize, (side.getId() + 1) * faceSize);
+            if (face.chars().allMatch(c -> c == face.charAt(0))) {
+                solved.add(side);
+            }
+        }
+        return solved;
+    }
+
+
+    @Test
+    @DisplayName("Solved tracking matches show() after random and undone rotations")
+    void solvedTrackingTest() {
+        Random random = new Random(23);
+        try {
+            for (int cubeSize = 1; cubeSize <= 6; cubeSize++) {
+                ArrayList<Cube> cubes = new ArrayList<>();
+                cubes.add(Cube.builder(cubeSize).solvedTracking(true).build());
+                if (cubeSize <= 5) {
+                    cubes.add(Cube.builder(cubeSize).stateModel(StateModel.PERMUTATION_TABLES)
+                            .solvedTracking(true).build());
+                }
+                if (cubeSize == 3) {
+                    cubes.add(Cube.builder(cubeSize).stateModel(StateModel.CUBIES).solvedTracking(true).build());
+                }
+
+                for (Cube cube : cubes) {
+                    int size = cubeSize;
+                    Assertions.assertTrue(cube.isSolved());
+                    Assertions.assertEquals(EnumSet.allOf(Side.class), cube.solvedFaces());
+
+                    cube.rotate(Side.FRONT.getId(), 0);
+                    Assertions.assertEquals(solvedFacesOf(cube.show(), size), cube.solvedFaces());
+                    Assertions.assertEquals(size == 1, cube.isSolved());
+                    cube.rotate(Side.BACK.getId(), size - 1);
+                    Assertions.assertTrue(cube.isSolved());
+
+                    for (int layer = 0; layer < size; layer++) {
+                        cube.rotate(Side.UP.getId(), layer);
+                    }
+                    Assertions.assertTrue(cube.isSolved());
+
+                    int[] sides = new int[30];
+                    int[] layers = new int[30];
+                    for (int i = 0; i < sides.length; i++) {
+                        sides[i] = random.nextInt(6);
+                        layers[i] = random.nextInt(size);
+                    }
+                    cube.apply(MoveSequence.compile(size, sides, layers));
+                    Assertions.assertEquals(solvedFacesOf(cube.show(), size), cube.solvedFaces());
+                    for (int i = sides.length - 1; i >= 0; i--) {
+                        cube.rotate(Side.getSideOfId(sides[i]).getOpposite().getId(), size - 1 - layers[i]);
+                    }
+                    Assertions.assertTrue(cube.isSolved());
+
+                    Thread[] threads = new Thread[4];
+                    for (int t = 0; t < threads.length; t++) {
+                        long seed = random.nextLong();
+                        threads[t] = new Thread(() -> {
+                            Random threadRandom = new Random(seed);
+                            try {
+                                for (int i = 0; i < 200; i++) {
+                                    cube.rotate(threadRandom.nextInt(6), threadRandom.nextInt(size));
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+                        threads[t].start();
+                    }
+                    for (Thread thread : threads) {
+                        thread.join();
+                    }
+                    String shown = cube.show();
+                    Assertions.assertEquals(solvedFacesOf(shown, size), cube.solvedFaces());
+                    Assertions.assertEquals(solvedFacesOf(shown, size).size() == 6, cube.isSolved());
+                }
+            }
+
+            Assertions.assertThrows(IllegalStateException.class, () -> Cube.builder(3).build().isSolved());
+            Assertions.assertThrows(IllegalStateException.class, () -> Cube.builder(3).build().solvedFaces());
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    @Test
+    @DisplayName("Deltas since a version keep a mirror equal to show()")
+    void showSinceTest() {
+        Random random = new Random(24);
+        try {
+            for (int cubeSize = 1; cubeSize <= 8; cubeSize++) {
+                int size = cubeSize;
+                Cube cube = Cube.builder(size).changeLog(64).build();
+                CubeDelta initial = cube.showSince(0);
+                Assertions.assertEquals(0, initial.getVersion());
+                Assertions.assertEquals(0, initial.getCount());
+
+                char[] mirror = cube.show().toCharArray();
+                long version = 0;
+                for (int round = 0; round < 20; round++) {
+                    Thread[] threads = new Thread[3];
+                    for (int t = 0; t < threads.length; t++) {
+                        long seed = random.nextLong();
+                        threads[t] = new Thread(() -> {
+                            Random threadRandom = new Random(seed);
+                            try {
+                                for (int i = 0; i < 5; i++) {
+                                    cube.rotate(threadRandom.nextInt(6), threadRandom.nextInt(size));
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+                        threads[t].start();
+                    }
+                    for (Thread thread : threads) {
+                        thread.join();
+                    }
+                    if (round % 4 == 0) {
+                        cube.apply(MoveSequence.compile(size, new int[]{random.nextInt(6), random.nextInt(6)},
+                                new int[]{random.nextInt(size), random.nextInt(size)}));
+                    }
+
+                    CubeDelta delta = cube.showSince(version);
+                    Assertions.assertEquals(version, delta.getFromVersion());
+                    Assertions.assertTrue(delta.getVersion() > version);
+                    delta.applyTo(mirror);
+                    version = delta.getVersion();
+                    Assertions.assertEquals(cube.show(), new String(mirror));
+                }
+            }
+
+            Cube cube = Cube.builder(10).changeLog(8).build();
+            for (int i = 0; i < 20; i++) {
+                cube.rotate(random.nextInt(6), random.nextInt(10));
+            }
+            CubeDelta truncated = cube.showSince(2);
+            Assertions.assertTrue(truncated.isFull());
+            Assertions.assertEquals(20, truncated.getVersion());
+            char[] full = new char[600];
+            truncated.applyTo(full);
+            Assertions.assertEquals(cube.show(), new String(full));
+
+            CubeDelta recent = cube.showSince(19);
+            Assertions.assertFalse(recent.isFull());
+            Assertions.assertTrue(recent.getCount() <= 4 * 10 + 100);
+
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cube.showSince(21));
+
+            AtomicInteger shown = new AtomicInteger();
+            Cube counted = Cube.builder(3).changeLog(8).showMode(ShowMode.SNAPSHOT)
+                    .afterShowing(shown::incrementAndGet).build();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> counted.showSince(1));
+            Assertions.assertEquals(1, shown.get());
+            Assertions.assertEquals(counted.show(), PackedState.toShowString(counted.showPacked(), 3));
+            Assertions.assertEquals(3, shown.get());
+            Assertions.assertThrows(IllegalStateException.class, () -> Cube.builder(3).build().showSince(0));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> Cube.builder(3).changeLog(-1).build());
+        } catch (InterruptedException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    private static class MirrorSubscriber implements Flow.Subscriber<CubeUpdate> {
+        private final char[] mirror;
+        private final long initialRequest;
+        private final ArrayList<CubeUpdate> received = new ArrayList<>();
+        private volatile Flow.Subscription subscription;
+        private volatile long lastSequence;
+        private volatile boolean completed;
+        private volatile boolean inOrder = true;
+
+        MirrorSubscriber(String shown, long initialRequest) {
+            this.mirror = shown.toCharArray();
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(CubeUpdate update) {
+            synchronized (this) {
+                if (!update.isSnapshot() && update.getSequence() != lastSequence + 1) {
+                    inOrder = false;
+                }
+                received.add(update);
+                if (update.getDelta() != null) {
+                    update.getDelta().applyTo(mirror);
+                }
+                lastSequence = update.getSequence();
+            }
+            if (initialRequest == 1) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Assertions.fail("got " + throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+        synchronized String mirror() {
+            return new String(mirror);
+        }
+
+        void awaitSequence(long sequence) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (lastSequence < sequence && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assertions.assertEquals(sequence, lastSequence);
+        }
+    }
+
+
+    @Test
+    @DisplayName("Update subscribers mirror the cube under every backpressure policy")
+    void updatesTest() {
+        Random random = new Random(25);
+        try {
+            Cube cube = Cube.builder(5).updates(4, BackpressurePolicy.BLOCK).updateDeltas(true).build();
+            MirrorSubscriber mirror = new MirrorSubscriber(cube.show(), 1);
+            cube.updates().subscribe(mirror);
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                long seed = random.nextLong();
+                threads[t] = new Thread(() -> {
+                    Random threadRandom = new Random(seed);
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            cube.rotate(threadRandom.nextInt(6), threadRandom.nextInt(5));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            cube.apply(MoveSequence.compile(5, new int[]{0, 5, 0}, new int[]{1, 2, 4}));
+            mirror.awaitSequence(803);
+            Assertions.assertTrue(mirror.inOrder);
+            Assertions.assertEquals(cube.show(), mirror.mirror());
+            cube.close();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!mirror.completed && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assertions.assertTrue(mirror.completed);
+
+            Cube stalled = Cube.builder(4).updates(1, BackpressurePolicy.BLOCK).build();
+            MirrorSubscriber idle = new MirrorSubscriber(stalled.show(), 0);
+            stalled.updates().subscribe(idle);
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                for (int i = 0; i < 10000; i++) {
+                    stalled.rotate(random.nextInt(6), random.nextInt(4));
+                }
+            });
+            idle.subscription.request(Long.MAX_VALUE);
+            idle.awaitSequence(10000);
+            Assertions.assertEquals(stalled.show(), idle.mirror());
+
+            Cube shared = Cube.builder(3).updates(4, BackpressurePolicy.BLOCK).updateDeltas(true).build();
+            MirrorSubscriber blocked = new MirrorSubscriber(shared.show(), 0);
+            MirrorSubscriber fast = new MirrorSubscriber(shared.show(), Long.MAX_VALUE);
+            shared.updates().subscribe(blocked);
+            shared.updates().subscribe(fast);
+            for (int i = 0; i < 100; i++) {
+                shared.rotate(random.nextInt(6), random.nextInt(3));
+            }
+            fast.awaitSequence(100);
+            Assertions.assertEquals(100, fast.received.size());
+            Assertions.assertTrue(fast.inOrder);
+            blocked.subscription.request(Long.MAX_VALUE);
+            blocked.awaitSequence(100);
+            Assertions.assertEquals(100, blocked.received.size());
+            Assertions.assertTrue(blocked.received.stream().noneMatch(CubeUpdate::isSnapshot));
+            Assertions.assertEquals(shared.show(), blocked.mirror());
+
+            MirrorSubscriber behind = new MirrorSubscriber(shared.show(), 0);
+            shared.updates().subscribe(behind);
+            for (int i = 0; i < 5000; i++) {
+                shared.rotate(random.nextInt(6), random.nextInt(3));
+            }
+            fast.awaitSequence(5100);
+            Assertions.assertEquals(5100, fast.received.size());
+            Assertions.assertTrue(fast.received.stream().noneMatch(CubeUpdate::isSnapshot));
+            behind.subscription.request(Long.MAX_VALUE);
+            behind.awaitSequence(5100);
+            Assertions.assertTrue(behind.received.stream().anyMatch(CubeUpdate::isSnapshot));
+            Assertions.assertTrue(behind.inOrder);
+            Assertions.assertEquals(shared.show(), behind.mirror());
+            Assertions.assertEquals(shared.show(), fast.mirror());
+
+            ExecutorService updates = Executors.newSingleThreadExecutor();
+            Cube dropping = Cube.builder(3).updates(2, BackpressurePolicy.DROP).updateExecutor(updates).build();
+            MirrorSubscriber dropped = new MirrorSubscriber(dropping.show(), 0);
+            dropping.updates().subscribe(dropped);
+            for (int i = 0; i < 10; i++) {
+                dropping.rotate(random.nextInt(6), random.nextInt(3));
+            }
+            updates.submit(() -> {}).get();
+            dropped.subscription.request(Long.MAX_VALUE);
+            updates.submit(() -> {}).get();
+            Assertions.assertEquals(2, dropped.received.size());
+            Assertions.assertEquals(1, dropped.received.get(0).getSequence());
+            Assertions.assertEquals(2, dropped.received.get(1).getSequence());
+            Assertions.assertNull(dropped.received.get(0).getDelta());
+
+            Cube coalescing = Cube.builder(3).updates(2, BackpressurePolicy.COALESCE).updateExecutor(updates).build();
+            MirrorSubscriber coalesced = new MirrorSubscriber(coalescing.show(), 0);
+            coalescing.updates().subscribe(coalesced);
+            for (int i = 0; i < 10; i++) {
+                coalescing.rotate(random.nextInt(6), random.nextInt(3));
+            }
+            updates.submit(() -> {}).get();
+            coalesced.subscription.request(Long.MAX_VALUE);
+            updates.submit(() -> {}).get();
+            Assertions.assertEquals(1, coalesced.received.size());
+            Assertions.assertTrue(coalesced.received.get(0).isSnapshot());
+            Assertions.assertEquals(10, coalesced.received.get(0).getSequence());
+            Assertions.assertEquals(coalescing.show(), coalesced.mirror());
+            updates.shutdown();
+
+            Assertions.assertThrows(IllegalStateException.class, () -> Cube.builder(3).build().updates());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> Cube.builder(3).updates(4, null).build());
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            Assertions.fail("got " + e);
+        }
+    }
+
+
+    @Test
+    @DisplayName("The journal, the change log and the update feed share one rotation sequence")
+    void sharedSequenceTest() {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("sequence");
+            try (Cube cube = Cube.builder(3).journal(directory).build()) {
+                for (int i = 0; i < 3; i++) {
+                    cube.rotate(Side.FRONT.getId(), i);
+                }
+            }
+
+            try (Cube cube = Cube.builder(3).journal(directory).changeLog(16)
+                    .updates(16, BackpressurePolicy.BLOCK).updateDeltas(true).build()) {
+                MirrorSubscriber mirror = new MirrorSubscriber(cube.show(), Long.MAX_VALUE);
+                cube.updates().subscribe(mirror);
+                cube.rotate(Side.UP.getId(), 0);
+                cube.rotate(Side.LEFT.getId(), 1);
+                mirror.awaitSequence(5);
+
+                CubeUpdate update = mirror.received.get(1);
+                CubeDelta delta = cube.showSince(update.getSequence() - 1);
+                Assertions.assertEquals(4, mirror.received.get(0).getSequence());
+                Assertions.assertEquals(update.getSequence(), delta.getVersion());
+                Assertions.assertEquals(update.getDelta().getCount(), delta.getCount());
+                Assertions.assertEquals(0, cube.showSince(update.getSequence()).getCount());
+                Assertions.assertEquals(cube.show(), mirror.mirror());
+            }
+        } catch (InterruptedException | IOException e) {
+            Assertions.fail("got " + e);
+        } finally {
+            if (directory != null) {
+                try {
+                    deleteDirectory(directory);
+                } catch (IOException ignored) {
+
+                }
+            }
+        }
+    }
+
+
 }